@@ -1,10 +1,16 @@
 package com.realtime.myfriend.config;
 
 
+import com.realtime.myfriend.entity.ArchivedMessageBucket;
 import com.realtime.myfriend.entity.CallHistory;
 import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.entity.ConversationSummary;
+import com.realtime.myfriend.entity.GroupMembership;
 import com.realtime.myfriend.entity.User;
+import org.bson.Document;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.index.IndexDefinition;
 import org.springframework.data.mongodb.core.index.IndexOperations;
 import org.springframework.data.mongodb.core.index.IndexResolver;
@@ -30,6 +36,78 @@ public class MongoConfig {
         createIndexFor(User.class);
         createIndexFor(ChatMessage.class);
         createIndexFor(CallHistory.class);
+        createIndexFor(GroupMembership.class);
+        createConversationIndexes();
+    }
+
+    // Single range scan per conversation read, newest first
+    private void createConversationIndexes() {
+        mongoTemplate.indexOps(ChatMessage.class).ensureIndex(new Index()
+                .on("conversationId", Sort.Direction.ASC)
+                .on("timestamp", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("conversation_timestamp"));
+
+        // Resume after a reconnect: everything past the client's last sequence
+        mongoTemplate.indexOps(ChatMessage.class).ensureIndex(new Index()
+                .on("conversationId", Sort.Direction.ASC)
+                .on("sequence", Sort.Direction.ASC)
+                .named("conversation_sequence"));
+
+        // Message search; Mongo keeps it current on every insert. The conversationId prefix
+        // scopes each query to one conversation's postings. Only one text index is allowed
+        // per collection, so the earlier content-only one goes first.
+        IndexOperations messageIndexes = mongoTemplate.indexOps(ChatMessage.class);
+        if (messageIndexes.getIndexInfo().stream().anyMatch(index -> "content_text".equals(index.getName()))) {
+            messageIndexes.dropIndex("content_text");
+        }
+        messageIndexes.ensureIndex(new CompoundTextIndexDefinition(new Document("conversationId", 1)
+                .append("content", "text"), "conversation_content_text"));
+
+        // Tiering job: globally oldest messages first
+        mongoTemplate.indexOps(ChatMessage.class).ensureIndex(new Index()
+                .on("timestamp", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named("timestamp_id"));
+
+        // Archive fall-through: older pages walk back by first message, newer ones forward by last
+        mongoTemplate.indexOps(ArchivedMessageBucket.class).ensureIndex(new Index()
+                .on("conversationId", Sort.Direction.ASC)
+                .on("firstTimestamp", Sort.Direction.DESC)
+                .on("firstMessageId", Sort.Direction.DESC)
+                .named("conversation_first"));
+        mongoTemplate.indexOps(ArchivedMessageBucket.class).ensureIndex(new Index()
+                .on("conversationId", Sort.Direction.ASC)
+                .on("lastTimestamp", Sort.Direction.ASC)
+                .on("lastMessageId", Sort.Direction.ASC)
+                .named("conversation_last"));
+
+        // Inbox: a user's conversations by latest activity
+        mongoTemplate.indexOps(ConversationSummary.class).ensureIndex(new Index()
+                .on("participants", Sort.Direction.ASC)
+                .on("lastMessageAt", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("participants_last_message"));
+
+        mongoTemplate.indexOps(CallHistory.class).ensureIndex(new Index()
+                .on("conversationId", Sort.Direction.ASC)
+                .on("startTime", Sort.Direction.DESC)
+                .named("conversation_start_time"));
+    }
+
+    /**
+     * Text index with an equality prefix, which TextIndexDefinition cannot express.
+     */
+    private record CompoundTextIndexDefinition(Document keys, String name) implements IndexDefinition {
+        @Override
+        public Document getIndexKeys() {
+            return keys;
+        }
+
+        @Override
+        public Document getIndexOptions() {
+            return new Document("name", name);
+        }
     }
 
     private void createIndexFor(Class<?> entityClass) {
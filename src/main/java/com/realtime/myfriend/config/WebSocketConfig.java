@@ -1,30 +1,190 @@
 package com.realtime.myfriend.config;
 
 import com.realtime.myfriend.helper.AuthChannelInterceptorAdapter;
+import com.realtime.myfriend.helper.CborMessageConverter;
+import com.realtime.myfriend.helper.GroupSubscriptionInterceptor;
 import com.realtime.myfriend.helper.HttpHandshakeInterceptor;
+import com.realtime.myfriend.helper.OutboundBacklogInterceptor;
+import com.realtime.myfriend.helper.PresenceActivityInterceptor;
+import com.realtime.myfriend.helper.RateLimitInterceptor;
+import com.realtime.myfriend.helper.SessionBacklogDecoratorFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
 
     private final AuthChannelInterceptorAdapter authChannelInterceptor;
+    private final PresenceActivityInterceptor presenceActivityInterceptor;
+    private final GroupSubscriptionInterceptor groupSubscriptionInterceptor;
+    private final RateLimitInterceptor rateLimitInterceptor;
+    private final OutboundBacklogInterceptor outboundBacklogInterceptor;
+    private final SessionBacklogDecoratorFactory sessionBacklogDecoratorFactory;
+    private final MeterRegistry meterRegistry;
+    private final HttpHandshakeInterceptor httpHandshakeInterceptor;
+    private final CborMessageConverter cborMessageConverter;
+
+    private static final String[] ALLOWED_ORIGINS = {
+            "http://localhost:3000", "http://192.168.0.101:3000", "https://myfriend-frontend-eight.vercel.app"
+    };
+
+    // simple: in-JVM broker, single node; relay: external STOMP broker shared by all nodes
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${app.websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${app.websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${app.websocket.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    // STOMP heart-beat: how often the server writes / how often clients are asked to write
+    @Value("${app.websocket.heartbeat.server-ms:10000}")
+    private long serverHeartbeatMs;
+
+    @Value("${app.websocket.heartbeat.client-ms:10000}")
+    private long clientHeartbeatMs;
+
+    // clientInboundChannel: virtual threads suit handlers that block on Mongo
+    @Value("${app.websocket.inbound.virtual-threads:true}")
+    private boolean inboundVirtualThreads;
 
-    // Active profile (default to dev if not set)
-    @Value("${spring.profiles.active:dev}")
-    private String activeProfile;
+    @Value("${app.websocket.inbound.pool-size:1024}")
+    private int inboundPoolSize;
+
+    @Value("${app.websocket.inbound.queue-capacity:100000}")
+    private int inboundQueueCapacity;
+
+    // clientOutboundChannel: bounded platform pool, writes are short and non-blocking
+    @Value("${app.websocket.outbound.pool-size:32}")
+    private int outboundPoolSize;
+
+    @Value("${app.websocket.outbound.queue-capacity:100000}")
+    private int outboundQueueCapacity;
+
+    // Shared by broker heartbeats and @Scheduled jobs
+    @Value("${app.websocket.broker.scheduler-pool-size:4}")
+    private int brokerSchedulerPoolSize;
+
+    @Value("${app.websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${app.websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${app.websocket.transport.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs;
+
+    @Value("${app.websocket.transport.time-to-first-message-ms:30000}")
+    private int timeToFirstMessageMs;
+
+    private ThreadPoolTaskScheduler messageBrokerTaskScheduler;
+    private ThreadPoolTaskExecutor inboundExecutor;
+    private ThreadPoolTaskExecutor outboundExecutor;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Qualifier("messageBrokerTaskScheduler") @Lazy ThreadPoolTaskScheduler taskScheduler) {
+        this.messageBrokerTaskScheduler = taskScheduler;
+    }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(authChannelInterceptor);
+        inboundExecutor = new ThreadPoolTaskExecutor();
+        inboundExecutor.setThreadNamePrefix("ws-inbound-");
+        inboundExecutor.setCorePoolSize(inboundPoolSize);
+        inboundExecutor.setMaxPoolSize(inboundPoolSize);
+        inboundExecutor.setQueueCapacity(inboundQueueCapacity);
+        inboundExecutor.setAllowCoreThreadTimeOut(true);
+        if (inboundVirtualThreads) {
+            inboundExecutor.setThreadFactory(Thread.ofVirtual().name("ws-inbound-", 0).factory());
+        }
+
+        registration.taskExecutor(inboundExecutor);
+        registration.interceptors(authChannelInterceptor, rateLimitInterceptor, presenceActivityInterceptor,
+                groupSubscriptionInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        outboundExecutor = new ThreadPoolTaskExecutor();
+        outboundExecutor.setThreadNamePrefix("ws-outbound-");
+        outboundExecutor.setCorePoolSize(outboundPoolSize);
+        outboundExecutor.setMaxPoolSize(outboundPoolSize);
+        outboundExecutor.setQueueCapacity(outboundQueueCapacity);
+        outboundExecutor.setAllowCoreThreadTimeOut(true);
+
+        registration.taskExecutor(outboundExecutor);
+        // Group frames for former members are dropped before they count into the backlog
+        registration.interceptors(groupSubscriptionInterceptor, outboundBacklogInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs)
+                .setTimeToFirstMessage(timeToFirstMessageMs)
+                // Counts frames out of the per-session backlog as they reach the socket
+                .addDecoratorFactory(sessionBacklogDecoratorFactory);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Strict content-type match: only frames that negotiated CBOR use it, JSON defaults follow
+        messageConverters.add(cborMessageConverter);
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void tuneSchedulerAndRegisterMetrics() {
+        messageBrokerTaskScheduler.setPoolSize(brokerSchedulerPoolSize);
+        registerQueueGauges("websocket.broker.scheduler", messageBrokerTaskScheduler.getScheduledThreadPoolExecutor());
+        registerQueueGauges("websocket.inbound", inboundExecutor.getThreadPoolExecutor());
+        registerQueueGauges("websocket.outbound", outboundExecutor.getThreadPoolExecutor());
+    }
+
+    private void registerQueueGauges(String prefix, ThreadPoolExecutor executor) {
+        Gauge.builder(prefix + ".queue.depth", executor, e -> e.getQueue().size())
+                .description("Tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Threads currently running tasks")
+                .register(meterRegistry);
     }
 
     @Override
@@ -32,22 +192,41 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
 
-        // Enable simple broker only in dev
-        if (!"prod".equalsIgnoreCase(activeProfile)) {
-            config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(serverHeartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(serverHeartbeatMs)
+                    // Lets convertAndSendToUser reach sessions held by other nodes
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            logger.info("STOMP broker relay enabled at {}:{}", relayHost, relayPort);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(new long[]{serverHeartbeatMs, clientHeartbeatMs})
+                    .setTaskScheduler(messageBrokerTaskScheduler);
         }
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Plain WebSocket for modern clients: no SockJS info round trip or frame wrapping
+        registry.addEndpoint(HttpHandshakeInterceptor.NATIVE_ENDPOINT)
+                .addInterceptors(httpHandshakeInterceptor)
+                .setAllowedOrigins(ALLOWED_ORIGINS);
+
+        // SockJS fallback for legacy clients
         registry.addEndpoint("/ws")
-                .addInterceptors(new HttpHandshakeInterceptor())
-                .setAllowedOrigins("http://localhost:3000","http://192.168.0.101:3000","https://myfriend-frontend-eight.vercel.app") // allow all in prod/dev
+                .addInterceptors(httpHandshakeInterceptor)
+                .setAllowedOrigins(ALLOWED_ORIGINS)
                 .withSockJS();
-
-        // Skip broker in prod: log info
-        if ("prod".equalsIgnoreCase(activeProfile)) {
-            System.out.println("[WebSocketConfig] Simple broker skipped in PROD to speed up startup.");
-        }
     }
 }
@@ -1,8 +1,13 @@
 package com.realtime.myfriend.controller;
 
 
+import com.realtime.myfriend.dtos.BroadcastRequest;
+import com.realtime.myfriend.dtos.BroadcastStatus;
+import com.realtime.myfriend.dtos.SlowSession;
 import com.realtime.myfriend.dtos.UserDTO;
 import com.realtime.myfriend.entity.User;
+import com.realtime.myfriend.service.BroadcastService;
+import com.realtime.myfriend.service.SlowConsumerTracker;
 import com.realtime.myfriend.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -10,6 +15,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -18,7 +24,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 @RestController
-@RequestMapping("/admin/users")
+@RequestMapping("/admin")
 @RequiredArgsConstructor
 @SecurityRequirement(name = "bearerAuth")
 @Tag(name = "Admin", description = "Admin management API")
@@ -27,8 +33,10 @@ public class AdminController {
     private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
     
     private final UserService userService;
+    private final BroadcastService broadcastService;
+    private final SlowConsumerTracker slowConsumerTracker;
 
-    @GetMapping
+    @GetMapping("/users")
     @Operation(summary = "Get all users (Admin only)")
     public CompletableFuture<ResponseEntity<List<UserDTO>>> getAllUsersAdmin() {
         return userService.getAllUsers()
@@ -39,7 +47,26 @@ public class AdminController {
                 });
     }
 
-//    @DeleteMapping("/{id}")
+    @PostMapping("/broadcast")
+    @Operation(summary = "Push an announcement to all online sessions or a segment of them (Admin only)")
+    public ResponseEntity<BroadcastStatus> broadcast(@RequestBody BroadcastRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(broadcastService.broadcast(request));
+    }
+
+    @GetMapping("/broadcast/{id}")
+    @Operation(summary = "Get the delivery progress of a broadcast (Admin only)")
+    public ResponseEntity<BroadcastStatus> getBroadcastStatus(@PathVariable String id) {
+        BroadcastStatus status = broadcastService.status(id);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/slow-sessions")
+    @Operation(summary = "List sessions over the outbound backlog threshold on this node (Admin only)")
+    public ResponseEntity<List<SlowSession>> getSlowSessions() {
+        return ResponseEntity.ok(slowConsumerTracker.slowSessions());
+    }
+
+//    @DeleteMapping("/users/{id}")
 //    @Operation(summary = "Delete any user (Admin only)")
 //    public CompletableFuture<ResponseEntity<Void>> deleteUserAdmin(@PathVariable String id) {
 //        return userService.deleteUser(id)
@@ -50,7 +77,7 @@ public class AdminController {
 //                });
 //    }
 //
-//    @PostMapping("/{id}/promote")
+//    @PostMapping("/users/{id}/promote")
 //    @Operation(summary = "Promote user to admin")
 //    public CompletableFuture<ResponseEntity<User>> promoteToAdmin(@PathVariable String id) {
 //        return userService.promoteToAdmin(id)
@@ -1,9 +1,18 @@
 package com.realtime.myfriend.controller;
 
+import com.realtime.myfriend.dtos.ConversationPage;
+import com.realtime.myfriend.dtos.InboxPage;
+import com.realtime.myfriend.dtos.ResumeRequest;
+import com.realtime.myfriend.dtos.ResumeResponse;
+import com.realtime.myfriend.dtos.SearchPage;
 import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.exception.InvalidOperationException;
+import com.realtime.myfriend.exception.SearchTimeoutException;
 import com.realtime.myfriend.exception.UserNotFoundException;
 import com.realtime.myfriend.repository.UserRepository;
 import com.realtime.myfriend.service.ChatService;
+import com.realtime.myfriend.service.ConversationSummaryService;
+import com.realtime.myfriend.service.MessageSearchService;
 import com.realtime.myfriend.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -30,6 +39,8 @@ public class ChatController {
     private final ChatService chatService;
     private final UserService userService;
     private final UserRepository userRepository;
+    private final ConversationSummaryService conversationSummaryService;
+    private final MessageSearchService messageSearchService;
 
     @PostMapping("/send")
     @Operation(summary = "Send a message")
@@ -63,9 +74,13 @@ public class ChatController {
     }
 
     @GetMapping("/conversation")
+    @Operation(summary = "Get a page of the conversation with another user")
     @PreAuthorize("hasRole('USER')")
-    public CompletableFuture<ResponseEntity<List<ChatMessage>>> getConversation(
+    public CompletableFuture<ResponseEntity<ConversationPage>> getConversation(
             @RequestParam String user2Id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "OLDER") ConversationPage.Direction direction,
+            @RequestParam(required = false) Integer limit,
             Principal principal
     ) {
         return userService.getUserByUsername(principal.getName())
@@ -73,7 +88,7 @@ public class ChatController {
                     if (user == null) {
                         return CompletableFuture.failedFuture(new UserNotFoundException("User not found"));
                     }
-                    return chatService.getConversation(user.getId(), user2Id);
+                    return chatService.getConversation(user.getId(), user2Id, cursor, direction, limit);
                 })
                 .thenApply(ResponseEntity::ok)
                 .handle((result, ex) -> {
@@ -82,6 +97,107 @@ public class ChatController {
                         if (ex.getCause() instanceof UserNotFoundException) {
                             return ResponseEntity.notFound().build();
                         }
+                        if (ex.getCause() instanceof InvalidOperationException) {
+                            return ResponseEntity.badRequest().build();
+                        }
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                    }
+                    return result;
+                });
+    }
+
+    @GetMapping("/inbox")
+    @Operation(summary = "Get the user's conversations, most recent first, with unread counts")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<InboxPage>> getInbox(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            Principal principal
+    ) {
+        return userService.getUserByUsername(principal.getName())
+                .thenCompose(user -> {
+                    if (user == null) {
+                        return CompletableFuture.failedFuture(new UserNotFoundException("User not found"));
+                    }
+                    return conversationSummaryService.getInbox(user.getId(), cursor, limit);
+                })
+                .thenApply(ResponseEntity::ok)
+                .handle((result, ex) -> {
+                    if (ex != null) {
+                        logger.error("Failed to get inbox: {}", ex.getMessage());
+                        if (ex.getCause() instanceof UserNotFoundException) {
+                            return ResponseEntity.notFound().build();
+                        }
+                        if (ex.getCause() instanceof InvalidOperationException) {
+                            return ResponseEntity.badRequest().build();
+                        }
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                    }
+                    return result;
+                });
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search the user's messages, optionally within one conversation")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<SearchPage>> search(
+            @RequestParam String q,
+            @RequestParam(required = false) String partnerId,
+            @RequestParam(defaultValue = "RELEVANCE") SearchPage.Order order,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer limit,
+            Principal principal
+    ) {
+        return userService.getUserByUsername(principal.getName())
+                .thenCompose(user -> {
+                    if (user == null) {
+                        return CompletableFuture.failedFuture(new UserNotFoundException("User not found"));
+                    }
+                    return messageSearchService.search(user.getId(), q, partnerId, order, page, limit);
+                })
+                .thenApply(ResponseEntity::ok)
+                .handle((result, ex) -> {
+                    if (ex != null) {
+                        logger.error("Failed to search messages: {}", ex.getMessage());
+                        if (ex.getCause() instanceof UserNotFoundException) {
+                            return ResponseEntity.notFound().build();
+                        }
+                        if (ex.getCause() instanceof InvalidOperationException) {
+                            return ResponseEntity.badRequest().build();
+                        }
+                        if (ex.getCause() instanceof SearchTimeoutException) {
+                            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                        }
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                    }
+                    return result;
+                });
+    }
+
+    @PostMapping("/resume")
+    @Operation(summary = "Get the messages missed since the last seen sequence of each conversation")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<ResumeResponse>> resume(
+            @RequestBody ResumeRequest request,
+            Principal principal
+    ) {
+        return userService.getUserByUsername(principal.getName())
+                .thenCompose(user -> {
+                    if (user == null) {
+                        return CompletableFuture.failedFuture(new UserNotFoundException("User not found"));
+                    }
+                    return chatService.resume(user.getId(), request.getLastSequences());
+                })
+                .thenApply(ResponseEntity::ok)
+                .handle((result, ex) -> {
+                    if (ex != null) {
+                        logger.error("Failed to resume conversations: {}", ex.getMessage());
+                        if (ex.getCause() instanceof UserNotFoundException) {
+                            return ResponseEntity.notFound().build();
+                        }
+                        if (ex.getCause() instanceof InvalidOperationException) {
+                            return ResponseEntity.badRequest().build();
+                        }
                         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
                     }
                     return result;
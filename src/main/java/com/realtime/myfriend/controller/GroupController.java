@@ -0,0 +1,142 @@
+package com.realtime.myfriend.controller;
+
+import com.realtime.myfriend.dtos.ConversationPage;
+import com.realtime.myfriend.dtos.CreateGroupRequest;
+import com.realtime.myfriend.dtos.GroupSummary;
+import com.realtime.myfriend.entity.ChatGroup;
+import com.realtime.myfriend.entity.GroupMembership;
+import com.realtime.myfriend.exception.GroupNotFoundException;
+import com.realtime.myfriend.exception.InvalidOperationException;
+import com.realtime.myfriend.exception.UserNotFoundException;
+import com.realtime.myfriend.service.GroupService;
+import com.realtime.myfriend.service.UserService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@RestController
+@RequestMapping("/chat/groups")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Groups", description = "Group chat API")
+public class GroupController {
+    private static final Logger logger = LoggerFactory.getLogger(GroupController.class);
+
+    private final GroupService groupService;
+    private final UserService userService;
+
+    @PostMapping
+    @Operation(summary = "Create a group; the caller becomes its owner")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<ChatGroup>> createGroup(
+            @RequestBody CreateGroupRequest request,
+            Principal principal
+    ) {
+        return currentUserId(principal)
+                .thenCompose(userId -> groupService.createGroup(userId, request.getName(), request.getMemberIds()))
+                .thenApply(group -> ResponseEntity.status(HttpStatus.CREATED).body(group))
+                .exceptionally(ex -> errorResponse("create group", ex));
+    }
+
+    @GetMapping
+    @Operation(summary = "Get the caller's groups with unread counts")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<List<GroupSummary>>> getGroups(Principal principal) {
+        return currentUserId(principal)
+                .thenCompose(groupService::getGroupsForUser)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(ex -> errorResponse("get groups", ex));
+    }
+
+    @GetMapping("/{groupId}/members")
+    @Operation(summary = "Get the members of a group, with their read watermarks")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<List<GroupMembership>>> getMembers(
+            @PathVariable String groupId,
+            Principal principal
+    ) {
+        return currentUserId(principal)
+                .thenCompose(userId -> groupService.getMembers(userId, groupId))
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(ex -> errorResponse("get group members", ex));
+    }
+
+    @PostMapping("/{groupId}/members/{userId}")
+    @Operation(summary = "Add a member (owner only)")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<Void>> addMember(
+            @PathVariable String groupId,
+            @PathVariable String userId,
+            Principal principal
+    ) {
+        return currentUserId(principal)
+                .thenCompose(actorId -> groupService.addMember(actorId, groupId, userId))
+                .thenApply(unused -> ResponseEntity.noContent().<Void>build())
+                .exceptionally(ex -> errorResponse("add group member", ex));
+    }
+
+    @DeleteMapping("/{groupId}/members/{userId}")
+    @Operation(summary = "Remove a member (owner) or leave the group (self)")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<Void>> removeMember(
+            @PathVariable String groupId,
+            @PathVariable String userId,
+            Principal principal
+    ) {
+        return currentUserId(principal)
+                .thenCompose(actorId -> groupService.removeMember(actorId, groupId, userId))
+                .thenApply(unused -> ResponseEntity.noContent().<Void>build())
+                .exceptionally(ex -> errorResponse("remove group member", ex));
+    }
+
+    @GetMapping("/{groupId}/messages")
+    @Operation(summary = "Get a page of the group's messages")
+    @PreAuthorize("hasRole('USER')")
+    public CompletableFuture<ResponseEntity<ConversationPage>> getMessages(
+            @PathVariable String groupId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "OLDER") ConversationPage.Direction direction,
+            @RequestParam(required = false) Integer limit,
+            Principal principal
+    ) {
+        return currentUserId(principal)
+                .thenCompose(userId -> groupService.getMessages(userId, groupId, cursor, direction, limit))
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(ex -> errorResponse("get group messages", ex));
+    }
+
+    private CompletableFuture<String> currentUserId(Principal principal) {
+        return userService.getUserByUsername(principal.getName())
+                .thenCompose(user -> user == null
+                        ? CompletableFuture.failedFuture(new UserNotFoundException("User not found"))
+                        : CompletableFuture.completedFuture(user.getId()));
+    }
+
+    private <T> ResponseEntity<T> errorResponse(String action, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        logger.error("Failed to {}: {}", action, cause.getMessage());
+        if (cause instanceof UserNotFoundException || cause instanceof GroupNotFoundException) {
+            return ResponseEntity.notFound().build();
+        }
+        if (cause instanceof AccessDeniedException) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (cause instanceof InvalidOperationException) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    }
+}
@@ -0,0 +1,23 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Delivery of one broadcast to the sessions of one node
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BroadcastNodeStatus {
+    private String nodeId;
+    private BroadcastStatus.State state;
+    private int targetedSessions;
+    private int dispatched;      // handed to the node's outbound channel
+    private int failed;
+    private int wavesCompleted;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,13 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BroadcastRequest {
+    private Object payload;           // delivered as-is on /user/queue/announcements
+    private BroadcastSegment segment; // optional
+}
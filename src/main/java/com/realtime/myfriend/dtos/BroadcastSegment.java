@@ -0,0 +1,19 @@
+package com.realtime.myfriend.dtos;
+
+import com.realtime.myfriend.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Every non-empty filter must match; an empty segment targets all sessions
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BroadcastSegment {
+    private List<String> userIds;
+    private List<String> usernames;
+    private List<User.Role> roles;
+    private List<String> transports; // "native", "sockjs" or a specific "sockjs-<transport>"
+}
@@ -0,0 +1,29 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BroadcastStatus {
+    private String id;
+    private State state;
+    private int targetedSessions; // summed over the nodes below
+    private int dispatched;      // handed to the outbound channel
+    private int failed;
+    private int wavesCompleted;  // of the furthest node
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private List<BroadcastNodeStatus> nodes; // every node that received the broadcast so far
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+}
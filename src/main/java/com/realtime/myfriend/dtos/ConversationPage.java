@@ -0,0 +1,24 @@
+package com.realtime.myfriend.dtos;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationPage {
+    private List<ChatMessage> messages;   // oldest first
+    private String olderCursor;           // pass with direction=OLDER to page back
+    private String newerCursor;           // pass with direction=NEWER to catch up
+    private boolean hasMore;              // more messages exist in the requested direction
+
+    public enum Direction {
+        OLDER, NEWER
+    }
+}
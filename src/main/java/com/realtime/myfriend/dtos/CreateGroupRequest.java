@@ -0,0 +1,15 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateGroupRequest {
+    private String name;
+    private List<String> memberIds; // the creator is added as owner automatically
+}
@@ -0,0 +1,13 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GroupReadReceipt {
+    private String groupId;
+    private long upToSequence; // read watermark
+}
@@ -0,0 +1,20 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class GroupSummary {
+    private String groupId;
+    private String name;
+    private String ownerId;
+    private int memberCount;
+    private long lastSequence;  // sequence of the newest group message
+    private long readUpTo;      // the user's read watermark
+    private long unreadCount;   // messages after the watermark
+}
@@ -0,0 +1,24 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class InboxEntry {
+    private String conversationId;
+    private String partnerId;
+    private String lastMessageId;
+    private String lastSenderId;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+    private Long lastSequence;
+    private long unreadCount;
+    private Long partnerReadUpTo; // partner's read watermark, for "seen" ticks on the user's own messages
+}
@@ -0,0 +1,18 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class InboxPage {
+    private List<InboxEntry> conversations; // most recent activity first
+    private String nextCursor;              // pass back as cursor for the next page
+    private boolean hasMore;
+}
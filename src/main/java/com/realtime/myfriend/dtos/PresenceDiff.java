@@ -0,0 +1,16 @@
+package com.realtime.myfriend.dtos;
+
+import com.realtime.myfriend.service.PresenceService.PresenceNotification;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresenceDiff {
+    private List<PresenceNotification> changes; // latest state per user since the previous frame
+    private long timestamp;
+}
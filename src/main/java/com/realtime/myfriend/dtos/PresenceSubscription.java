@@ -0,0 +1,14 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PresenceSubscription {
+    private List<String> userIds; // users whose online/offline changes this session wants
+}
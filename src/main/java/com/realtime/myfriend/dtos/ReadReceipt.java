@@ -12,5 +12,6 @@ import java.util.List;
 public class ReadReceipt {
     private String senderId;    // The one who originally sent the messages
     private String receiverId;  // The one who read them
-    private List<String> messageIds; // IDs of the messages being marked as read
+    private List<String> messageIds; // IDs of the messages being marked as read (legacy clients)
+    private Long upToSequence;       // read watermark; takes precedence over messageIds
 }
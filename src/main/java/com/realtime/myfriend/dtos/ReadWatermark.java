@@ -0,0 +1,15 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReadWatermark {
+    private String conversationId;
+    private String readerId;     // the one who read
+    private long upToSequence;   // every message up to and including this sequence is read
+    private long timestamp;
+}
@@ -0,0 +1,14 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResumeRequest {
+    private Map<String, Long> lastSequences; // partner userId -> last sequence the client has seen
+}
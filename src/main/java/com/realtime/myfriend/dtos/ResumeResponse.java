@@ -0,0 +1,18 @@
+package com.realtime.myfriend.dtos;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResumeResponse {
+    private Map<String, List<ChatMessage>> messages; // partner userId -> missed messages, by sequence; may repeat recent ones the client has
+    private Set<String> hasMore;                     // partners with more missed messages; resume again from the last one
+}
@@ -0,0 +1,27 @@
+package com.realtime.myfriend.dtos;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchPage {
+    private List<ChatMessage> results;
+    private int page;          // zero-based
+    private boolean hasMore;   // another page exists within the search result cap
+    private int conversationsSearched;
+    private boolean truncated; // the user has more conversations than one search covers; results may be incomplete
+    private LocalDateTime archivedBefore; // read messages older than this may be archived and are not searched
+
+    public enum Order {
+        RELEVANCE, RECENCY
+    }
+}
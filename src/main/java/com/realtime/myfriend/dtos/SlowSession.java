@@ -0,0 +1,18 @@
+package com.realtime.myfriend.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SlowSession {
+    private String sessionId;
+    private String username;
+    private int pending;        // frames queued but not yet written to the socket
+    private int parked;         // coalesced frames held until the session recovers
+    private LocalDateTime slowSince;
+}
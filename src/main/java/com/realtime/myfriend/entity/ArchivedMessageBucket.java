@@ -0,0 +1,35 @@
+package com.realtime.myfriend.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+// A run of consecutive messages of one conversation moved out of chat_messages,
+// stored as one gzip'd BSON array. Id is "conversationId|firstMessageId", so re-archiving
+// the same run overwrites it. Indexed per conversation on both ends in MongoConfig
+@Document(collection = "chat_messages_archive")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedMessageBucket {
+    @Id
+    private String id;
+
+    private String conversationId;
+
+    private LocalDateTime firstTimestamp;
+    private String firstMessageId;
+    private LocalDateTime lastTimestamp;
+    private String lastMessageId;
+    private Long firstSequence;
+    private Long lastSequence;
+
+    private int messageCount;
+    private long rawBytes;       // BSON size before compression
+    private byte[] payload;      // gzip({ messages: [...] })
+
+    private LocalDateTime archivedAt;
+}
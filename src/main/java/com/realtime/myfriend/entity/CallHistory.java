@@ -22,6 +22,9 @@ public class CallHistory {
     
     @Indexed
     private String receiverId;
+
+    // Sorted "userA:userB" pair, see ConversationIds; indexed with startTime in MongoConfig
+    private String conversationId;
     
     private CallType callType;
     private LocalDateTime startTime;
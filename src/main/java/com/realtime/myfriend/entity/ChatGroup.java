@@ -0,0 +1,22 @@
+package com.realtime.myfriend.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "chat_groups")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatGroup {
+    @Id
+    private String id;
+
+    private String name;
+    private String ownerId;
+    private int memberCount;
+    private LocalDateTime createdAt;
+}
@@ -21,6 +21,12 @@ public class ChatMessage {
     
     @Indexed
     private String receiverId;
+
+    // Sorted "userA:userB" pair, see ConversationIds; indexed with timestamp in MongoConfig
+    private String conversationId;
+
+    // Per-conversation, assigned at save time by the MessageStore
+    private Long sequence;
     
     private String content;
     private LocalDateTime timestamp;
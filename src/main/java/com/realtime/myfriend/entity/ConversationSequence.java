@@ -0,0 +1,19 @@
+package com.realtime.myfriend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Last sequence number handed out per conversation; id is the conversationId
+@Document(collection = "conversation_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSequence {
+    @Id
+    private String id;
+
+    private long value;
+}
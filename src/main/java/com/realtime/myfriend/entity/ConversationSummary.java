@@ -0,0 +1,35 @@
+package com.realtime.myfriend.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+// One document per conversation, kept current by the send/read paths; id is the conversationId.
+// Indexed with lastMessageAt in MongoConfig
+@Document(collection = "conversation_summaries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummary {
+    @Id
+    private String id;
+
+    private List<String> participants;
+
+    private String lastMessageId;
+    private String lastSenderId;
+    private String lastMessagePreview;
+    private LocalDateTime lastMessageAt;
+    private Long lastSequence;
+
+    // userId -> messages that user has not read yet
+    private Map<String, Long> unread;
+
+    // userId -> read watermark: everything up to this sequence has been read by that user
+    private Map<String, Long> readUpTo;
+}
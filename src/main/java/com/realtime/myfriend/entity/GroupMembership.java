@@ -0,0 +1,39 @@
+package com.realtime.myfriend.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Document(collection = "group_memberships")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupMembership {
+    // "groupId:userId", so a membership exists at most once
+    @Id
+    private String id;
+
+    @Indexed
+    private String groupId;
+
+    @Indexed
+    private String userId;
+
+    private Role role;
+    private LocalDateTime joinedAt;
+
+    // Read watermark: every group message up to this sequence has been read
+    private Long readUpTo;
+
+    public static String idOf(String groupId, String userId) {
+        return groupId + ":" + userId;
+    }
+
+    public enum Role {
+        OWNER, MEMBER
+    }
+}
@@ -0,0 +1,7 @@
+package com.realtime.myfriend.exception;
+
+public class GroupNotFoundException extends RuntimeException {
+    public GroupNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.realtime.myfriend.exception;
+
+import com.realtime.myfriend.entity.ChatMessage;
+
+import java.util.List;
+
+/**
+ * A batch append that failed part way; {@link #getPersisted()} holds the messages
+ * that were stored before the failure, with their ids and sequences assigned.
+ */
+public class PartialWriteException extends RuntimeException {
+    private final List<ChatMessage> persisted;
+
+    public PartialWriteException(String message, List<ChatMessage> persisted, Throwable cause) {
+        super(message, cause);
+        this.persisted = List.copyOf(persisted);
+    }
+
+    public List<ChatMessage> getPersisted() {
+        return persisted;
+    }
+}
@@ -0,0 +1,7 @@
+package com.realtime.myfriend.exception;
+
+public class SearchTimeoutException extends RuntimeException {
+    public SearchTimeoutException(String message) {
+        super(message);
+    }
+}
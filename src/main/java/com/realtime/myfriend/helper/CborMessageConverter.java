@@ -0,0 +1,75 @@
+package com.realtime.myfriend.helper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+
+/**
+ * CBOR payload codec for STOMP. Only used when a frame's content type asks for it,
+ * so JSON stays the default. Inbound frames declare {@code application/cbor};
+ * outbound frames go out as {@code application/octet-stream} (the only type Spring
+ * writes as a binary WebSocket frame) with a {@code content-codec: cbor} header.
+ */
+@Component
+public class CborMessageConverter extends AbstractMessageConverter {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+    public static final String CODEC_HEADER = "content-codec";
+    public static final String CODEC_CBOR = "cbor";
+
+    private final ObjectMapper mapper = defaultMapper();
+
+    public CborMessageConverter() {
+        super(APPLICATION_CBOR, MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        setStrictContentTypeMatch(true);
+        setSerializedPayloadClass(byte[].class);
+    }
+
+    public static ObjectMapper defaultMapper() {
+        return CBORMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        // Raw byte[] payloads stay with ByteArrayMessageConverter
+        return clazz != byte[].class;
+    }
+
+    @Override
+    @Nullable
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, @Nullable Object conversionHint) {
+        Object payload = message.getPayload();
+        if (!(payload instanceof byte[] bytes)) {
+            return null;
+        }
+        try {
+            return mapper.readValue(bytes, targetClass);
+        } catch (IOException e) {
+            throw new MessageConversionException(message, "Could not read CBOR payload: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    @Nullable
+    protected Object convertToInternal(Object payload, @Nullable MessageHeaders headers, @Nullable Object conversionHint) {
+        try {
+            return mapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new MessageConversionException("Could not write CBOR payload: " + e.getMessage(), e);
+        }
+    }
+}
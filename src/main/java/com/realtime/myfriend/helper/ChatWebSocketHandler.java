@@ -3,6 +3,7 @@ package com.realtime.myfriend.helper;
 import com.realtime.myfriend.dtos.ReadReceipt;
 import com.realtime.myfriend.entity.ChatMessage;
 import com.realtime.myfriend.service.ChatService;
+import com.realtime.myfriend.service.ReadReceiptCoalescer;
 import com.realtime.myfriend.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -24,6 +25,8 @@ public class ChatWebSocketHandler {
     private final ChatService chatService;
     private final SimpMessagingTemplate messagingTemplate;
     private final UserService userService;
+    private final PayloadCodecNegotiator codecNegotiator;
+    private final ReadReceiptCoalescer readReceiptCoalescer;
 
     @MessageMapping("/chat.send")
     public void sendMessage(
@@ -53,10 +56,10 @@ public class ChatWebSocketHandler {
                         String receiverUsername = userService.findUsernameById(savedMessage.getReceiverId());
 
                         messagingTemplate.convertAndSendToUser(
-                                senderUsername, "/queue/messages", savedMessage
+                                senderUsername, "/queue/messages", savedMessage, codecNegotiator.headersForUser(senderUsername)
                         );
                         messagingTemplate.convertAndSendToUser(
-                                receiverUsername, "/queue/messages", savedMessage
+                                receiverUsername, "/queue/messages", savedMessage, codecNegotiator.headersForUser(receiverUsername)
                         );
 
                         logger.info("Message [{}] sent from {} → {}", savedMessage.getId(), senderUsername, receiverUsername);
@@ -86,37 +89,12 @@ public class ChatWebSocketHandler {
                 return;
             }
 
-            // ✅ Async mark as read with comprehensive error handling
-            chatService.markMessagesAsRead(receipt.getSenderId(), receipt.getReceiverId(), receipt.getMessageIds())
-                    .whenComplete((result, ex) -> {
-                        if (ex != null) {
-                            handleMarkReadError(ex, receipt);
-                            return;
-                        }
-                        handleMarkReadSuccess(receipt);
-                    });
+            // Coalesced per conversation; the sender gets one watermark frame per flush
+            readReceiptCoalescer.record(receipt.getSenderId(), readerId,
+                    receipt.getUpToSequence(), receipt.getMessageIds());
 
         } catch (Exception ex) {
-            logger.error("Error processing read receipt: {}", ex.getMessage());
-        }
-    }
-
-    private void handleMarkReadSuccess(ReadReceipt receipt) {
-        try {
-            // Convert sender ID to username for WebSocket routing
-            String senderUsername = userService.findUsernameById(receipt.getSenderId());
-
-            messagingTemplate.convertAndSendToUser(
-                    senderUsername, "/queue/read", receipt
-            );
-
-            logger.info("User {} marked {} messages as read from {}",
-                    receipt.getReceiverId(),
-                    receipt.getMessageIds() != null ? receipt.getMessageIds().size() : "all",
-                    receipt.getSenderId());
-
-        } catch (Exception e) {
-            logger.error("Error sending read receipt confirmation: {}", e.getMessage());
+            handleMarkReadError(ex, receipt);
         }
     }
 
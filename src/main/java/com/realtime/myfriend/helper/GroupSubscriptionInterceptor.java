@@ -0,0 +1,147 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.service.ClusterEventBus;
+import com.realtime.myfriend.service.GroupService;
+import com.realtime.myfriend.service.UserService;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Guards group topics: only members may SUBSCRIBE to {@code /topic/group.<id>}, and
+ * nobody may SEND to it directly, so every group message goes through
+ * {@code /app/group.send} and gets stored and numbered. Pattern subscriptions under
+ * {@code /topic} are refused outright: the simple broker matches Ant patterns
+ * ({@code /topic/**}) and a relay its own wildcards ({@code /topic/#}), either of
+ * which would reach every group's topic past the membership check.
+ *
+ * <p>Also registered on the outbound channel: a subscription outlives the membership
+ * it was checked against, so every group frame is checked again against the cached
+ * member ids and dropped once the subscriber left or was removed.</p>
+ */
+@Component
+public class GroupSubscriptionInterceptor implements ChannelInterceptor {
+
+    private static final String TOPIC_PREFIX = "/topic";
+    // Ant patterns for the simple broker, AMQP-style wildcards for a relay
+    private static final String PATTERN_CHARACTERS = "*?{#";
+
+    private final GroupService groupService;
+    private final UserService userService;
+
+    // sessionId -> subscriptionId -> the group subscription it stands for
+    private final ConcurrentMap<String, ConcurrentMap<String, GroupSubscription>> subscriptions = new ConcurrentHashMap<>();
+
+    public GroupSubscriptionInterceptor(@Lazy GroupService groupService, @Lazy UserService userService) {
+        this.groupService = groupService;
+        this.userService = userService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        // The simple broker builds plain simp headers, a relay hands on the broker's MESSAGE frames
+        if (accessor == null
+                ? SimpMessageType.MESSAGE.equals(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()))
+                : StompCommand.MESSAGE.equals(accessor.getCommand())) {
+            return outbound(message);
+        }
+        if (accessor == null) {
+            return message;
+        }
+        if (StompCommand.UNSUBSCRIBE.equals(accessor.getCommand())) {
+            forget(accessor.getSessionId(), accessor.getSubscriptionId());
+            return message;
+        }
+        String destination = accessor.getDestination();
+        if (destination == null) {
+            return message;
+        }
+        if (destination.startsWith(ClusterEventBus.DESTINATION_PREFIX)) {
+            throw new AccessDeniedException("Reserved destination " + destination);
+        }
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                && destination.startsWith(TOPIC_PREFIX) && isPattern(destination)) {
+            throw new AccessDeniedException("Wildcard subscriptions are not allowed on " + destination);
+        }
+        if (!destination.startsWith(GroupService.GROUP_TOPIC_PREFIX)) {
+            return message;
+        }
+
+        if (StompCommand.SEND.equals(accessor.getCommand())) {
+            throw new AccessDeniedException("Group messages must be sent to /app/group.send");
+        }
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            Principal user = accessor.getUser();
+            String groupId = destination.substring(GroupService.GROUP_TOPIC_PREFIX.length());
+            String userId = user == null ? null : userService.findIdByUsername(user.getName());
+            if (userId == null || !groupService.isMember(groupId, userId)) {
+                throw new AccessDeniedException("Not a member of group " + groupId);
+            }
+            if (accessor.getSessionId() != null && accessor.getSubscriptionId() != null) {
+                subscriptions.computeIfAbsent(accessor.getSessionId(), s -> new ConcurrentHashMap<>())
+                        .put(accessor.getSubscriptionId(), new GroupSubscription(groupId, userId));
+            }
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        subscriptions.remove(event.getSessionId());
+    }
+
+    // A frame from the broker to one subscription of one session
+    private Message<?> outbound(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !destination.startsWith(GroupService.GROUP_TOPIC_PREFIX)) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        Map<String, GroupSubscription> session = sessionId == null ? null : subscriptions.get(sessionId);
+        GroupSubscription subscription = session == null || subscriptionId == null ? null : session.get(subscriptionId);
+        if (subscription == null || !groupService.isMember(subscription.groupId(), subscription.userId())) {
+            return null;
+        }
+        return message;
+    }
+
+    private void forget(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        subscriptions.computeIfPresent(sessionId, (id, session) -> {
+            session.remove(subscriptionId);
+            return session.isEmpty() ? null : session;
+        });
+    }
+
+    private static boolean isPattern(String destination) {
+        for (int i = 0; i < destination.length(); i++) {
+            if (PATTERN_CHARACTERS.indexOf(destination.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record GroupSubscription(String groupId, String userId) {}
+}
@@ -0,0 +1,95 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.dtos.GroupMessage;
+import com.realtime.myfriend.dtos.GroupReadReceipt;
+import com.realtime.myfriend.service.ChatService;
+import com.realtime.myfriend.service.GroupService;
+import com.realtime.myfriend.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.Map;
+
+@Controller
+@RequiredArgsConstructor
+public class GroupWebSocketHandler {
+    private static final Logger logger = LoggerFactory.getLogger(GroupWebSocketHandler.class);
+
+    private final ChatService chatService;
+    private final GroupService groupService;
+    private final UserService userService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @MessageMapping("/group.send")
+    public void sendMessage(
+            @Payload GroupMessage groupMessage,
+            SimpMessageHeaderAccessor headerAccessor
+    ) {
+        Principal principal = headerAccessor.getUser();
+        if (principal == null) {
+            logger.warn("Unauthorized group message attempt");
+            return;
+        }
+
+        String username = principal.getName();
+        String senderId = userService.findIdByUsername(username);
+        String groupId = groupMessage.getGroupId();
+        if (groupId == null || !groupService.isMember(groupId, senderId)) {
+            logger.warn("User {} tried to post to group {} without membership", username, groupId);
+            sendError(username, "Not a member of this group");
+            return;
+        }
+
+        // Stored once, published once: the broker hands it to every subscribed member session
+        chatService.saveGroupMessage(senderId, groupId, groupMessage.getContent())
+                .whenComplete((savedMessage, ex) -> {
+                    if (ex != null) {
+                        logger.error("Failed to save group message: {}", ex.getMessage());
+                        sendError(username, "Failed to send message");
+                        return;
+                    }
+                    try {
+                        messagingTemplate.convertAndSend(GroupService.GROUP_TOPIC_PREFIX + groupId, savedMessage);
+                        // The sender has read everything up to their own message
+                        groupService.markRead(groupId, senderId, savedMessage.getSequence());
+                        logger.info("Group message [{}] sent by {} to group {}", savedMessage.getId(), username, groupId);
+                    } catch (Exception e) {
+                        logger.error("Error publishing group message: {}", e.getMessage());
+                    }
+                });
+    }
+
+    @MessageMapping("/group.read")
+    public void markAsRead(
+            @Payload GroupReadReceipt receipt,
+            SimpMessageHeaderAccessor headerAccessor
+    ) {
+        Principal principal = headerAccessor.getUser();
+        if (principal == null) {
+            logger.warn("Unauthorized group read attempt");
+            return;
+        }
+
+        try {
+            String readerId = userService.findIdByUsername(principal.getName());
+            groupService.requireMember(receipt.getGroupId(), readerId);
+            groupService.markRead(receipt.getGroupId(), readerId, receipt.getUpToSequence());
+        } catch (Exception ex) {
+            logger.error("Failed to mark group {} as read: {}", receipt.getGroupId(), ex.getMessage());
+        }
+    }
+
+    private void sendError(String username, String error) {
+        messagingTemplate.convertAndSendToUser(username, "/queue/errors", Map.of(
+                "error", error,
+                "timestamp", System.currentTimeMillis()
+        ));
+    }
+}
@@ -11,6 +11,10 @@ import java.util.Map;
 
 @Component
 public class HttpHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String TRANSPORT_ATTRIBUTE = "transport";
+    public static final String NATIVE_ENDPOINT = "/ws-native";
+
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
                                    WebSocketHandler wsHandler, Map<String, Object> attributes) {
@@ -21,10 +25,23 @@ public class HttpHandshakeInterceptor implements HandshakeInterceptor {
                 attributes.put("token", token); // 👈 save into session attributes
             }
         }
+        attributes.put(TRANSPORT_ATTRIBUTE, resolveTransport(request.getURI().getPath()));
         return true;
     }
 
     @Override
     public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
                                WebSocketHandler wsHandler, Exception exception) {}
+
+    // "native" for /ws-native, otherwise "sockjs-<transport>" from /ws/{server}/{session}/{transport}
+    static String resolveTransport(String path) {
+        if (path == null) {
+            return "unknown";
+        }
+        if (path.contains(NATIVE_ENDPOINT)) {
+            return "native";
+        }
+        String last = path.substring(path.lastIndexOf('/') + 1);
+        return last.isEmpty() ? "sockjs" : "sockjs-" + last;
+    }
 }
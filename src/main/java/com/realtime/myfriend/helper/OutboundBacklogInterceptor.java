@@ -0,0 +1,32 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.service.SlowConsumerTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts frames into each session's outbound backlog as they enter
+ * {@code clientOutboundChannel}; {@link SessionBacklogDecoratorFactory} counts them
+ * out once written. Parks coalescible frames for slow sessions.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboundBacklogInterceptor implements ChannelInterceptor {
+
+    private final SlowConsumerTracker slowConsumerTracker;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        return slowConsumerTracker.onEnqueue(message);
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent || ex != null) {
+            slowConsumerTracker.onDropped(message);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.realtime.myfriend.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers which sessions asked for CBOR payloads ({@code accept: application/cbor}
+ * on CONNECT) and builds outbound headers accordingly. Binary frames need a native
+ * WebSocket, so SockJS sessions always get JSON. User-wide sends only switch to CBOR
+ * when every open session of that user accepts it.
+ */
+@Component
+public class PayloadCodecNegotiator {
+    private static final Logger logger = LoggerFactory.getLogger(PayloadCodecNegotiator.class);
+
+    private final ConcurrentMap<String, Boolean> binarySessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> userSessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> sessionUsers = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Principal user = accessor.getUser();
+        String sessionId = accessor.getSessionId();
+        if (user == null || sessionId == null) {
+            return;
+        }
+
+        boolean binary = acceptsCbor(accessor.getFirstNativeHeader("accept")) && isNative(accessor.getSessionAttributes());
+        binarySessions.put(sessionId, binary);
+        sessionUsers.put(sessionId, user.getName());
+        userSessions.computeIfAbsent(user.getName(), k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        logger.debug("Session {} negotiated {} payloads", sessionId, binary ? "CBOR" : "JSON");
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String sessionId = event.getSessionId();
+        binarySessions.remove(sessionId);
+        String username = sessionUsers.remove(sessionId);
+        if (username != null) {
+            userSessions.computeIfPresent(username, (k, sessions) -> {
+                sessions.remove(sessionId);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+    }
+
+    /**
+     * Headers for a {@code convertAndSendToUser} reaching all of the user's sessions,
+     * or {@code null} to use the JSON default.
+     */
+    @Nullable
+    public MessageHeaders headersForUser(String username) {
+        Set<String> sessions = userSessions.get(username);
+        if (sessions == null || sessions.isEmpty()
+                || !sessions.stream().allMatch(id -> binarySessions.getOrDefault(id, false))) {
+            return null;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        applyCbor(accessor);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    /**
+     * Headers that pin a user-destination send to one session, in that session's codec.
+     */
+    public MessageHeaders headersForSession(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        if (binarySessions.getOrDefault(sessionId, false)) {
+            applyCbor(accessor);
+        }
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    public boolean isBinary(String sessionId) {
+        return binarySessions.getOrDefault(sessionId, false);
+    }
+
+    private static void applyCbor(SimpMessageHeaderAccessor accessor) {
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(CborMessageConverter.CODEC_HEADER, CborMessageConverter.CODEC_CBOR);
+    }
+
+    private static boolean acceptsCbor(String accept) {
+        return accept != null && accept.contains(CborMessageConverter.APPLICATION_CBOR.toString());
+    }
+
+    private static boolean isNative(Map<String, Object> attributes) {
+        return attributes != null && "native".equals(attributes.get(HttpHandshakeInterceptor.TRANSPORT_ATTRIBUTE));
+    }
+}
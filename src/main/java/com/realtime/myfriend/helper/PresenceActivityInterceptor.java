@@ -0,0 +1,35 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.service.PresenceService;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refreshes session liveness on every inbound STOMP frame, heartbeats included.
+ */
+@Component
+public class PresenceActivityInterceptor implements ChannelInterceptor {
+
+    private final PresenceService presenceService;
+
+    // Lazy: PresenceService sits behind the messaging template that this interceptor helps build
+    public PresenceActivityInterceptor(@Lazy PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+
+        if (sessionId != null && type != SimpMessageType.CONNECT && type != SimpMessageType.DISCONNECT) {
+            presenceService.sessionActive(sessionId);
+        }
+        return message;
+    }
+}
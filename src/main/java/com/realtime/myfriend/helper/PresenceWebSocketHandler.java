@@ -0,0 +1,47 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.dtos.PresenceSubscription;
+import com.realtime.myfriend.service.PresenceService;
+import com.realtime.myfriend.service.PresenceService.PresenceNotification;
+import com.realtime.myfriend.service.PresenceSubscriptionRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+
+@Controller
+@RequiredArgsConstructor
+public class PresenceWebSocketHandler {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceWebSocketHandler.class);
+
+    private final PresenceSubscriptionRegistry presenceSubscriptions;
+    private final PresenceService presenceService;
+
+    @MessageMapping("/presence.subscribe")
+    public void subscribe(
+            @Payload PresenceSubscription subscription,
+            SimpMessageHeaderAccessor headerAccessor
+    ) {
+        Principal principal = headerAccessor.getUser();
+        if (principal == null || subscription.getUserIds() == null) {
+            logger.warn("Rejected presence subscription, sessionId={}", headerAccessor.getSessionId());
+            return;
+        }
+
+        String sessionId = headerAccessor.getSessionId();
+        Set<String> interests = presenceSubscriptions.subscribe(sessionId, principal.getName(), subscription.getUserIds());
+
+        // Current state first, so the client does not wait for the next change
+        List<PresenceNotification> snapshot = interests.stream()
+                .map(userId -> new PresenceNotification(userId, presenceService.isUserOnline(userId)))
+                .toList();
+        presenceSubscriptions.sendToSession(sessionId, snapshot);
+    }
+}
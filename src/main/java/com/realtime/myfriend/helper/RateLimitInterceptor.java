@@ -0,0 +1,69 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.security.RateLimitProperties;
+import com.realtime.myfriend.security.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drops SEND frames over the principal's rate limit before they reach a handler and
+ * tells the client on {@code /user/queue/errors}.
+ */
+@Component
+public class RateLimitInterceptor implements ChannelInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitInterceptor.class);
+
+    private final RateLimiter rateLimiter;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, @Lazy SimpMessagingTemplate messagingTemplate) {
+        this.rateLimiter = rateLimiter;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) {
+            return message;
+        }
+        RateLimitProperties.Rule rule = rateLimiter.ruleForDestination(accessor.getDestination());
+        Principal user = accessor.getUser();
+        if (rule == null || user == null) {
+            return message;
+        }
+
+        long wait = rateLimiter.tryAcquire(rule, user.getName(), "stomp");
+        if (wait == 0) {
+            return message;
+        }
+
+        logger.debug("Throttled {} on {} for session {}", user.getName(), accessor.getDestination(), accessor.getSessionId());
+        if (rateLimiter.shouldNotify(user.getName())) {
+            try {
+                messagingTemplate.convertAndSendToUser(user.getName(), "/queue/errors", Map.of(
+                        "error", "Rate limit exceeded",
+                        "destination", accessor.getDestination(),
+                        "retryAfterMs", Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)),
+                        "timestamp", System.currentTimeMillis()
+                ));
+            } catch (Exception e) {
+                logger.error("Failed to send rate limit notice to {}: {}", user.getName(), e.getMessage());
+            }
+        }
+        return null; // dropped
+    }
+}
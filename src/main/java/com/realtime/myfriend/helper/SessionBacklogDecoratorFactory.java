@@ -0,0 +1,73 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.service.SlowConsumerTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Wraps each WebSocket session so every frame actually written to the socket is
+ * counted out of the session's outbound backlog and into its transport's outbound
+ * frame and byte counters. The wrapper sits underneath Spring's buffering decorator,
+ * so the backlog includes frames waiting in the send buffer.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionBacklogDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private final SlowConsumerTracker slowConsumerTracker;
+    private final TransportMetrics transportMetrics;
+    private final WebSocketSessionRegistry sessionRegistry;
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                Principal user = session.getPrincipal();
+                slowConsumerTracker.register(session.getId(), user != null ? user.getName() : null);
+                sessionRegistry.register(session);
+                super.afterConnectionEstablished(new CountingSession(session));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    slowConsumerTracker.unregister(session.getId());
+                    sessionRegistry.unregister(session.getId());
+                }
+            }
+        };
+    }
+
+    private class CountingSession extends WebSocketSessionDecorator {
+
+        private final TransportMetrics.Outbound outbound;
+
+        CountingSession(WebSocketSession delegate) {
+            super(delegate);
+            this.outbound = transportMetrics.outbound(delegate.getAttributes());
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                super.sendMessage(message);
+                outbound.record(message);
+            } finally {
+                slowConsumerTracker.onSent(getId());
+            }
+        }
+    }
+}
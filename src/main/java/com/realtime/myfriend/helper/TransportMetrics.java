@@ -0,0 +1,103 @@
+package com.realtime.myfriend.helper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts STOMP sessions, and the frames and bytes written to them, per transport
+ * (native WebSocket vs. each SockJS transport), as tagged by {@link HttpHandshakeInterceptor}.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransportMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(TransportMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, String> sessionTransports = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> openByTransport = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Outbound> outboundByTransport = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        String transport = transportOf(SimpMessageHeaderAccessor.getSessionAttributes(event.getMessage().getHeaders()));
+        if (sessionId == null || sessionTransports.putIfAbsent(sessionId, transport) != null) {
+            return;
+        }
+
+        openGauge(transport).incrementAndGet();
+        Counter.builder("websocket.sessions.opened")
+                .tag("transport", transport)
+                .register(meterRegistry)
+                .increment();
+        logger.debug("STOMP session {} connected over {}", sessionId, transport);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String transport = sessionTransports.remove(event.getSessionId());
+        if (transport != null) {
+            openGauge(transport).decrementAndGet();
+        }
+    }
+
+    public String transportOf(String sessionId) {
+        return sessionTransports.get(sessionId);
+    }
+
+    /**
+     * Outbound counters for the transport the session's handshake attributes name.
+     */
+    public Outbound outbound(Map<String, Object> sessionAttributes) {
+        return outboundByTransport.computeIfAbsent(transportOf(sessionAttributes), t -> new Outbound(
+                Counter.builder("websocket.outbound.frames")
+                        .tag("transport", t)
+                        .description("Frames written to clients by transport")
+                        .register(meterRegistry),
+                Counter.builder("websocket.outbound.bytes")
+                        .tag("transport", t)
+                        .baseUnit("bytes")
+                        // SockJS adds its own framing and escaping on top of this
+                        .description("Payload bytes written to clients by transport, before SockJS framing")
+                        .register(meterRegistry)));
+    }
+
+    private AtomicInteger openGauge(String transport) {
+        return openByTransport.computeIfAbsent(transport, t -> {
+            AtomicInteger open = new AtomicInteger();
+            Gauge.builder("websocket.sessions.open", open, AtomicInteger::get)
+                    .tag("transport", t)
+                    .description("Open STOMP sessions by transport")
+                    .register(meterRegistry);
+            return open;
+        });
+    }
+
+    public record Outbound(Counter frames, Counter bytes) {
+        public void record(WebSocketMessage<?> message) {
+            frames.increment();
+            bytes.increment(message.getPayloadLength());
+        }
+    }
+
+    private static String transportOf(Map<String, Object> attributes) {
+        Object transport = attributes != null ? attributes.get(HttpHandshakeInterceptor.TRANSPORT_ATTRIBUTE) : null;
+        return transport != null ? transport.toString() : "unknown";
+    }
+}
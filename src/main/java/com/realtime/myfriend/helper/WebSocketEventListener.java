@@ -3,12 +3,15 @@ package com.realtime.myfriend.helper;
 
 import com.realtime.myfriend.entity.User;
 import com.realtime.myfriend.security.JwtService;
+import com.realtime.myfriend.service.ChatService;
 import com.realtime.myfriend.service.PresenceService;
+import com.realtime.myfriend.service.PresenceSubscriptionRegistry;
 import com.realtime.myfriend.service.UserService;
 import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
@@ -29,10 +32,17 @@ public class WebSocketEventListener {
     private final PresenceService presenceService;
     private final UserService userService;
     private final JwtService jwtService;
+    private final ChatService chatService;
+    private final PresenceSubscriptionRegistry presenceSubscriptions;
+
+    // Until the client sends /app/presence.subscribe it watches its recent contacts
+    @Value("${app.presence.default-contacts:200}")
+    private int defaultContacts;
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        presenceSubscriptions.unsubscribe(headerAccessor.getSessionId());
 
         Principal user = headerAccessor.getUser();
         if (user == null) {
@@ -40,17 +50,8 @@ public class WebSocketEventListener {
             return;
         }
 
-        String username = user.getName();
-
-        CompletableFuture.runAsync(() -> {
-            try {
-                User dbUser = userService.getUserByUsername(username).join();
-                presenceService.userDisconnected(dbUser.getId());
-                logger.info("User disconnected: {}", username);
-            } catch (Exception e) {
-                logger.error("Error handling disconnect for user {}: {}", username, e.getMessage());
-            }
-        });
+        presenceService.sessionClosed(headerAccessor.getSessionId());
+        logger.info("User disconnected: {}", user.getName());
     }
 
 
@@ -65,11 +66,24 @@ public class WebSocketEventListener {
         }
 
         String username = principal.getName();
+        String sessionId = headerAccessor.getSessionId();
+        // Before the lookup below, so a disconnect in the meantime is visible to it
+        presenceSubscriptions.open(sessionId, username);
 
         userService.getUserByUsername(username)
                 .thenAccept(user -> {
                     if (user != null) {
-                        presenceService.userConnected(user.getId());
+                        if (!presenceSubscriptions.subscribeDefaults(sessionId,
+                                chatService.getRecentContactIds(user.getId(), defaultContacts))) {
+                            logger.info("User {} disconnected before the connection was registered", username);
+                            return;
+                        }
+                        presenceService.userConnected(user.getId(), sessionId);
+                        if (!presenceSubscriptions.isOpen(sessionId)) {
+                            // Closed while registering, possibly before there was anything to close
+                            presenceService.sessionClosed(sessionId);
+                            return;
+                        }
                         logger.info("User connected successfully: {}", username);
                     } else {
                         logger.error("User not found in DB for authenticated username: {}", username);
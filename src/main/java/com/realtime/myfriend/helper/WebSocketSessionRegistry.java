@@ -0,0 +1,49 @@
+package com.realtime.myfriend.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Open WebSocket sessions of this node by id, which is also their STOMP session id,
+ * so services can close a session they decided is dead. Kept by
+ * {@link SessionBacklogDecoratorFactory}.
+ */
+@Component
+public class WebSocketSessionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketSessionRegistry.class);
+
+    private final ConcurrentMap<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    void register(WebSocketSession session) {
+        sessions.put(session.getId(), session);
+    }
+
+    void unregister(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * Closes the session if it is open here; its disconnect event follows as for any close.
+     *
+     * @return whether this node held the session
+     */
+    public boolean close(String sessionId, CloseStatus status) {
+        WebSocketSession session = sessions.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            logger.warn("Failed to close WebSocket session {}: {}", sessionId, e.getMessage());
+        }
+        return true;
+    }
+}
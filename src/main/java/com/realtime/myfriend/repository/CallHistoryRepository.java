@@ -12,8 +12,8 @@ public interface CallHistoryRepository extends MongoRepository<CallHistory, Stri
     @Query("{ $or: [ { 'callerId': ?0 }, { 'receiverId': ?0 } ] }")
     List<CallHistory> findByUserId(String userId);
     
-    @Query("{ $or: [ { 'callerId': ?0, 'receiverId': ?1 }, { 'callerId': ?1, 'receiverId': ?0 } ] }")
-    List<CallHistory> findCallHistoryBetweenUsers(String user1Id, String user2Id);
+    @Query(value = "{ 'conversationId': ?0 }", sort = "{ 'startTime': -1 }")
+    List<CallHistory> findCallHistoryBetweenUsers(String conversationId);
     
     @Query("{ 'startTime': { $gte: ?0, $lte: ?1 } }")
     List<CallHistory> findCallsBetweenDates(LocalDateTime start, LocalDateTime end);
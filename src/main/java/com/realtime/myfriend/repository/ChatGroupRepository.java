@@ -0,0 +1,7 @@
+package com.realtime.myfriend.repository;
+
+import com.realtime.myfriend.entity.ChatGroup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ChatGroupRepository extends MongoRepository<ChatGroup, String> {
+}
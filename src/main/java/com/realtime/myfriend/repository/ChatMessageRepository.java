@@ -10,8 +10,8 @@ import java.util.List;
 
 public interface ChatMessageRepository extends MongoRepository<ChatMessage, String> {
 
-    @Query("{ $or: [ { 'senderId': ?0, 'receiverId': ?1 }, { 'senderId': ?1, 'receiverId': ?0 } ] }")
-    List<ChatMessage> findConversation(String user1Id, String user2Id);
+    @Query(value = "{ 'conversationId': ?0 }", sort = "{ 'timestamp': 1 }")
+    List<ChatMessage> findConversation(String conversationId);
 
 
     @Query("{ 'senderId': ?0, 'receiverId': ?1, 'read': false }")
@@ -20,16 +20,8 @@ public interface ChatMessageRepository extends MongoRepository<ChatMessage, Stri
     @Query(value = "{ 'senderId': ?0, 'receiverId': ?1 }", delete = true)
     void deleteConversation(String user1Id, String user2Id);
 
-    @Query("{ $or: [ " +
-            " { 'senderId': ?0, 'receiverId': ?1 }, " +
-            " { 'senderId': ?1, 'receiverId': ?0 }, " +
-            " { 'senderId': ?2, 'receiverId': ?3 }, " +
-            " { 'senderId': ?3, 'receiverId': ?2 } " +
-            "] }")
-    List<ChatMessage> findConversationWithUsername(
-            String user1Id, String user2Id,
-            String user1Username, String user2Username
-    );
+    @Query(value = "{ 'conversationId': { $in: [ ?0, ?1 ] } }", sort = "{ 'timestamp': 1 }")
+    List<ChatMessage> findConversationWithUsername(String idConversationId, String usernameConversationId);
 
     @Query("{ '_id': { $in: ?2 }, 'senderId': ?0, 'receiverId': ?1 }")
     void updateManyAsRead(String senderId, String receiverId, List<String> messageIds);
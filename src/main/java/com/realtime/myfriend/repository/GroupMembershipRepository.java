@@ -0,0 +1,17 @@
+package com.realtime.myfriend.repository;
+
+import com.realtime.myfriend.entity.GroupMembership;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.util.List;
+
+public interface GroupMembershipRepository extends MongoRepository<GroupMembership, String> {
+
+    List<GroupMembership> findByGroupId(String groupId);
+
+    List<GroupMembership> findByUserId(String userId);
+
+    @Query(value = "{ 'groupId': ?0 }", fields = "{ 'userId': 1 }")
+    List<GroupMembership> findMemberIds(String groupId);
+}
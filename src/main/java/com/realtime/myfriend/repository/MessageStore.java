@@ -0,0 +1,80 @@
+package com.realtime.myfriend.repository;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.util.MessageCursor;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistence of chat messages for the send, history, resume and read paths. The
+ * store owns message ids and per-conversation sequence numbers. Chosen with
+ * {@code app.chat.store.type}: {@code mongo} (default) or {@code segment-log}.
+ *
+ * <p>Search, recent contacts, archive tiering and the conversationId backfill query
+ * {@code chat_messages} directly and only see messages kept by the Mongo store.</p>
+ */
+public interface MessageStore {
+
+    /**
+     * Stores the message, assigning its id and sequence.
+     */
+    ChatMessage append(ChatMessage message);
+
+    /**
+     * Stores the messages in list order, assigning ids and consecutive sequences per
+     * conversation; returns the same instances. When only a prefix of the list was
+     * stored it throws {@link com.realtime.myfriend.exception.PartialWriteException}
+     * naming those messages.
+     */
+    List<ChatMessage> appendAll(List<ChatMessage> messages);
+
+    /**
+     * Keyset page over {@code (timestamp, id)}: with {@code older}, up to {@code limit}
+     * messages before {@code position} (or the newest) newest first, otherwise after
+     * it (or the oldest) oldest first.
+     */
+    List<ChatMessage> page(String conversationId, @Nullable MessageCursor position, boolean older, int limit);
+
+    /**
+     * Messages with a sequence above {@code sequence}, in sequence order.
+     */
+    List<ChatMessage> afterSequence(String conversationId, long sequence, int limit);
+
+    /**
+     * Last sequence handed out in the conversation, 0 if none.
+     */
+    long currentSequence(String conversationId);
+
+    /**
+     * Highest sequence among the conversation's stored messages, 0 if none. Unlike
+     * {@link #currentSequence} it never counts a number reserved by an insert still in flight.
+     */
+    long lastStoredSequence(String conversationId);
+
+    /**
+     * {@link #currentSequence} for several conversations; ones without messages may be left out.
+     */
+    Map<String, Long> currentSequences(Collection<String> conversationIds);
+
+    /**
+     * Highest sequence among the given messages of the conversation, 0 if none is found.
+     */
+    long highestSequence(String conversationId, Collection<String> messageIds);
+
+    /**
+     * Marks the reader's messages up to {@code upToSequence} as read.
+     *
+     * @return how many messages became read
+     */
+    long markReadUpTo(String conversationId, String readerId, long upToSequence);
+
+    /**
+     * Marks the given messages to the reader as read.
+     *
+     * @return how many messages became read
+     */
+    long markRead(String conversationId, String readerId, Collection<String> messageIds);
+}
@@ -0,0 +1,175 @@
+package com.realtime.myfriend.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.exception.PartialWriteException;
+import com.realtime.myfriend.service.ConversationSequenceService;
+import com.realtime.myfriend.util.MessageCursor;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link MessageStore} on {@code chat_messages}, with sequences from
+ * {@link ConversationSequenceService}.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "app.chat.store", name = "type", havingValue = "mongo", matchIfMissing = true)
+@RequiredArgsConstructor
+public class MongoMessageStore implements MessageStore {
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ConversationSequenceService sequenceService;
+
+    @Override
+    public ChatMessage append(ChatMessage message) {
+        message.setSequence(sequenceService.next(message.getConversationId()));
+        return chatMessageRepository.save(message);
+    }
+
+    @Override
+    public List<ChatMessage> appendAll(List<ChatMessage> messages) {
+        // One counter round trip per conversation, numbered in list order
+        Map<String, List<ChatMessage>> byConversation = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            byConversation.computeIfAbsent(message.getConversationId(), k -> new ArrayList<>()).add(message);
+        }
+        byConversation.forEach((conversationId, conversation) -> {
+            long next = sequenceService.reserve(conversationId, conversation.size());
+            for (ChatMessage message : conversation) {
+                message.setSequence(next++);
+            }
+        });
+        // Ids are assigned up front so the ones stored before a failure can be reported
+        for (ChatMessage message : messages) {
+            if (message.getId() == null) {
+                message.setId(new ObjectId().toHexString());
+            }
+        }
+        try {
+            mongoTemplate.insert(messages, ChatMessage.class);
+        } catch (DataAccessException e) {
+            int stored = storedBeforeFailure(e);
+            if (stored > 0) {
+                throw new PartialWriteException("Stored " + stored + " of " + messages.size() + " messages",
+                        messages.subList(0, stored), e);
+            }
+            throw e;
+        }
+        return messages;
+    }
+
+    // The insert is ordered, so everything before the first failed index was written
+    private static int storedBeforeFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulk) {
+                return bulk.getWriteErrors().stream()
+                        .mapToInt(BulkWriteError::getIndex)
+                        .min()
+                        .orElse(0);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public List<ChatMessage> page(String conversationId, MessageCursor position, boolean older, int limit) {
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        if (position != null) {
+            criteria = new Criteria().andOperator(criteria, older
+                    ? new Criteria().orOperator(
+                            Criteria.where("timestamp").lt(position.timestamp()),
+                            Criteria.where("timestamp").is(position.timestamp()).and("id").lt(position.id()))
+                    : new Criteria().orOperator(
+                            Criteria.where("timestamp").gt(position.timestamp()),
+                            Criteria.where("timestamp").is(position.timestamp()).and("id").gt(position.id())));
+        }
+
+        Sort.Direction sortDirection = older ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Query query = new Query(criteria)
+                .with(Sort.by(sortDirection, "timestamp").and(Sort.by(sortDirection, "id")))
+                .limit(limit);
+        return mongoTemplate.find(query, ChatMessage.class);
+    }
+
+    @Override
+    public List<ChatMessage> afterSequence(String conversationId, long sequence, int limit) {
+        Query query = new Query(Criteria.where("conversationId").is(conversationId)
+                .and("sequence").gt(sequence))
+                .with(Sort.by(Sort.Direction.ASC, "sequence"))
+                .limit(limit);
+        return mongoTemplate.find(query, ChatMessage.class);
+    }
+
+    @Override
+    public long currentSequence(String conversationId) {
+        return sequenceService.current(conversationId);
+    }
+
+    @Override
+    public long lastStoredSequence(String conversationId) {
+        // On the conversation_sequence index
+        Query query = new Query(Criteria.where("conversationId").is(conversationId)
+                .and("sequence").exists(true))
+                .with(Sort.by(Sort.Direction.DESC, "sequence"))
+                .limit(1);
+        query.fields().include("sequence");
+        ChatMessage latest = mongoTemplate.findOne(query, ChatMessage.class);
+        return latest == null ? 0 : latest.getSequence();
+    }
+
+    @Override
+    public Map<String, Long> currentSequences(Collection<String> conversationIds) {
+        return sequenceService.currentAll(conversationIds);
+    }
+
+    @Override
+    public long highestSequence(String conversationId, Collection<String> messageIds) {
+        Query query = new Query(Criteria.where("_id").in(messageIds)
+                .and("conversationId").is(conversationId)
+                .and("sequence").exists(true))
+                .with(Sort.by(Sort.Direction.DESC, "sequence"))
+                .limit(1);
+        query.fields().include("sequence");
+        ChatMessage latest = mongoTemplate.findOne(query, ChatMessage.class);
+        return latest == null ? 0 : latest.getSequence();
+    }
+
+    @Override
+    public long markReadUpTo(String conversationId, String readerId, long upToSequence) {
+        // Messages from before sequence numbers existed are older than any numbered one
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("conversationId").is(conversationId)
+                        .and("receiverId").is(readerId)
+                        .and("read").is(false),
+                new Criteria().orOperator(
+                        Criteria.where("sequence").lte(upToSequence),
+                        Criteria.where("sequence").exists(false))));
+        return mongoTemplate.updateMulti(query, Update.update("read", true), ChatMessage.class).getModifiedCount();
+    }
+
+    @Override
+    public long markRead(String conversationId, String readerId, Collection<String> messageIds) {
+        // Only unread ones, so the modified count is what the unread counter drops by
+        Query query = new Query(Criteria.where("_id").in(messageIds)
+                .and("conversationId").is(conversationId)
+                .and("receiverId").is(readerId)
+                .and("read").is(false));
+        return mongoTemplate.updateMulti(query, Update.update("read", true), ChatMessage.class).getModifiedCount();
+    }
+}
@@ -0,0 +1,677 @@
+package com.realtime.myfriend.repository.segment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.util.MessageCursor;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of one conversation: a directory of {@link Segment}s, each with a
+ * sparse index of every {@code index-interval}-th message. The log assigns ids and
+ * sequence numbers (the message's ordinal) under its lock, keeps timestamps
+ * non-decreasing and ids strictly increasing, so log order, sequence order, id order
+ * and the {@code (timestamp, id)} keyset order all agree and every lookup is a
+ * binary search plus a short scan.
+ *
+ * <p>Read receipts are appended as watermark records and applied to messages as
+ * they are read back; compaction folds them into sealed segments.</p>
+ *
+ * <p>Every operation runs between {@link #retain()} and {@link #release()};
+ * {@link #close()} unmaps the segments once the last one has finished. Segments
+ * replaced by compaction are unmapped the same way, the next time no operation runs.</p>
+ */
+final class ConversationLog {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    private final String conversationId;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final ObjectMapper mapper;
+    private final Consumer<Segment> onWrite;
+
+    // Guarded by this
+    private final List<Segment> segments = new ArrayList<>();
+    private long lastOrdinal;
+    private LocalDateTime lastTimestamp;
+    private ObjectId lastId;
+    private int sinceIndexed;
+    private int users;
+    private boolean closing;
+    // Replaced by compaction while running operations may still read them
+    private final List<Segment> retired = new ArrayList<>();
+
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+    // readerId -> highest sequence read; written under the lock, read without it
+    private final ConcurrentMap<String, Long> watermarks = new ConcurrentHashMap<>();
+
+    private ConversationLog(String conversationId, Path directory, int segmentBytes, int indexInterval,
+                            ObjectMapper mapper, Consumer<Segment> onWrite) {
+        this.conversationId = conversationId;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+        this.mapper = mapper;
+        this.onWrite = onWrite;
+    }
+
+    /**
+     * Opens the log, recovering it from disk if it exists. Sealed segments load their
+     * saved index; the active one is scanned and cut at the first damaged record.
+     */
+    static ConversationLog open(String conversationId, Path directory, int segmentBytes, int indexInterval,
+                                ObjectMapper mapper, Consumer<Segment> onWrite) throws IOException {
+        ConversationLog log = new ConversationLog(conversationId, directory, segmentBytes, indexInterval, mapper, onWrite);
+        if (Files.isDirectory(directory)) {
+            log.recover();
+        }
+        return log;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        // Leftovers of an interrupted compaction; the original segment is still in place
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path path : listing.filter(p -> p.getFileName().toString().endsWith(COMPACTING_SUFFIX)).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            String name = file.getFileName().toString();
+            long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            boolean active = i == files.size() - 1;
+
+            Segment segment = Segment.map(file, file, base, active ? segmentBytes : Integer.MAX_VALUE, active);
+            if (active || !SegmentIndexFile.read(segment)) {
+                scan(segment, active);
+                if (!active) {
+                    segment.sealed = true;
+                    SegmentIndexFile.write(segment);
+                }
+            }
+            segment.watermarks.forEach((reader, upTo) -> watermarks.merge(reader, upTo, Math::max));
+            segments.add(segment);
+            lastOrdinal = Math.max(lastOrdinal, segment.lastOrdinal);
+        }
+
+        List<ChatMessage> tail = page(null, true, 1);
+        lastTimestamp = tail.isEmpty() ? null : tail.get(0).getTimestamp();
+        lastId = tail.isEmpty() ? null : new ObjectId(tail.get(0).getId());
+    }
+
+    /**
+     * Registers an operation on the log.
+     *
+     * @return false if the log is closing; the caller must open it again
+     */
+    synchronized boolean retain() {
+        if (closing) {
+            return false;
+        }
+        users++;
+        return true;
+    }
+
+    void release() {
+        boolean last;
+        List<Segment> unreachable = List.of();
+        synchronized (this) {
+            last = --users == 0 && closing;
+            if (users == 0 && !last && !retired.isEmpty()) {
+                unreachable = List.copyOf(retired);
+                retired.clear();
+            }
+        }
+        unreachable.forEach(Segment::close);
+        if (last) {
+            unmap();
+        }
+    }
+
+    /**
+     * Stops new operations and unmaps the segments, now or when the last running
+     * operation releases the log.
+     */
+    void close() {
+        boolean idle;
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            idle = users == 0;
+        }
+        if (idle) {
+            unmap();
+        }
+    }
+
+    /**
+     * Completes once the segments are forced and unmapped, after which the directory
+     * may be opened again.
+     */
+    CompletableFuture<Void> closed() {
+        return closed;
+    }
+
+    private void unmap() {
+        try {
+            List<Segment> snapshot;
+            synchronized (this) {
+                snapshot = new ArrayList<>(segments);
+                snapshot.addAll(retired);
+                retired.clear();
+            }
+            for (Segment segment : snapshot) {
+                segment.close();
+            }
+        } finally {
+            closed.complete(null);
+        }
+    }
+
+    private void scan(Segment segment, boolean active) {
+        segment.entries.clear();
+        segment.watermarks.clear();
+        segment.watermarkRecords = 0;
+        int since = 0;
+        int offset = 0;
+        long ordinal = segment.baseOrdinal;
+        while (true) {
+            Segment.Record record = segment.read(offset, segment.capacity());
+            if (record == null) {
+                break;
+            }
+            if (record.type() == Segment.MESSAGE) {
+                ChatMessage message = decode(record.body());
+                if (segment.entries.isEmpty() || ++since >= indexInterval) {
+                    segment.entries.add(new Segment.IndexEntry(ordinal, offset, message.getTimestamp(), message.getId()));
+                    since = 0;
+                }
+                segment.lastOrdinal = ordinal++;
+            } else if (record.type() == Segment.WATERMARK) {
+                WatermarkRecord watermark = decodeWatermark(record.body());
+                segment.watermarks.merge(watermark.readerId(), watermark.upToSequence(), Math::max);
+                segment.watermarkRecords++;
+            }
+            offset = record.next();
+        }
+
+        if (segment.isCleanAt(offset)) {
+            segment.recovered(offset);
+        } else if (active) {
+            logger.warn("Conversation {} segment {} has a damaged tail at offset {}, truncating",
+                    conversationId, segment.path.getFileName(), offset);
+            segment.truncate(offset);
+        } else {
+            // Sealed segments are mapped read-only; later segments keep their own ordinals
+            logger.error("Conversation {} sealed segment {} is damaged at offset {}, ignoring the rest of it",
+                    conversationId, segment.path.getFileName(), offset);
+            segment.recovered(offset);
+        }
+        sinceIndexed = since;
+    }
+
+    /**
+     * Appends messages in order, assigning each its id, sequence and (clamped) timestamp.
+     */
+    synchronized void append(Collection<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            long ordinal = lastOrdinal + 1;
+            LocalDateTime timestamp = (message.getTimestamp() != null ? message.getTimestamp() : LocalDateTime.now())
+                    .truncatedTo(ChronoUnit.MILLIS);
+            if (lastTimestamp != null && timestamp.isBefore(lastTimestamp)) {
+                timestamp = lastTimestamp;
+            }
+            // A fresh ObjectId can sort lower: its counter wraps, and the clock may step back
+            ObjectId id = new ObjectId();
+            if (lastId != null && id.compareTo(lastId) <= 0) {
+                id = successor(lastId);
+            }
+            message.setId(id.toHexString());
+            message.setSequence(ordinal);
+            message.setTimestamp(timestamp);
+
+            byte[] body = encode(message);
+            Segment segment = writable(body.length);
+            int offset = segment.append(Segment.MESSAGE, body);
+            if (segment.entries.isEmpty() || ++sinceIndexed >= indexInterval) {
+                segment.entries.add(new Segment.IndexEntry(ordinal, offset, timestamp, message.getId()));
+                sinceIndexed = 0;
+            }
+            segment.lastOrdinal = ordinal;
+            lastOrdinal = ordinal;
+            lastTimestamp = timestamp;
+            lastId = id;
+            onWrite.accept(segment);
+        }
+    }
+
+    synchronized long lastOrdinal() {
+        return lastOrdinal;
+    }
+
+    /**
+     * Keyset page: with {@code older}, up to {@code limit} messages before {@code position}
+     * (or the newest ones) newest first; otherwise those after it (or the oldest ones) oldest first.
+     */
+    List<ChatMessage> page(MessageCursor position, boolean older, int limit) {
+        List<Segment> snapshot;
+        Start start;
+        synchronized (this) {
+            snapshot = List.copyOf(segments);
+            if (older) {
+                long anchor = lastOrdinal + 1;
+                if (position != null) {
+                    Located before = lastEntry(entry -> compare(entry, position) < 0);
+                    if (before == null) {
+                        return List.of();
+                    }
+                    anchor = before.entry().ordinal();
+                }
+                // Far enough back that a full page lies between here and the position
+                start = locateOrdinal(Math.max(1, anchor - limit));
+            } else {
+                Located from = position == null ? null : lastEntry(entry -> compare(entry, position) <= 0);
+                start = from == null ? new Start(0, 0) : new Start(from.segment(), from.entry().offset());
+            }
+        }
+
+        Scanner scanner = new Scanner(snapshot, start);
+        if (older) {
+            ArrayDeque<ChatMessage> window = new ArrayDeque<>(limit + 1);
+            for (ChatMessage message = scanner.next(); message != null; message = scanner.next()) {
+                if (position != null && compare(message, position) >= 0) {
+                    break;
+                }
+                window.addLast(message);
+                if (window.size() > limit) {
+                    window.removeFirst();
+                }
+            }
+            List<ChatMessage> result = new ArrayList<>(window);
+            Collections.reverse(result);
+            return result;
+        }
+
+        List<ChatMessage> result = new ArrayList<>(limit);
+        for (ChatMessage message = scanner.next(); message != null && result.size() < limit; message = scanner.next()) {
+            if (position == null || compare(message, position) > 0) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    List<ChatMessage> afterSequence(long sequence, int limit) {
+        List<Segment> snapshot;
+        Start start;
+        synchronized (this) {
+            snapshot = List.copyOf(segments);
+            start = locateOrdinal(sequence + 1);
+        }
+        List<ChatMessage> result = new ArrayList<>(limit);
+        Scanner scanner = new Scanner(snapshot, start);
+        for (ChatMessage message = scanner.next(); message != null && result.size() < limit; message = scanner.next()) {
+            if (message.getSequence() > sequence) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Highest sequence among {@code ids}, counting only messages received by
+     * {@code receiverId} when it is given; 0 if none is found.
+     */
+    long highestSequence(Collection<String> ids, String receiverId) {
+        long highest = 0;
+        for (String id : ids) {
+            List<Segment> snapshot;
+            Located at;
+            synchronized (this) {
+                snapshot = List.copyOf(segments);
+                // Ids increase strictly along the log
+                at = lastEntry(entry -> entry.id().compareTo(id) <= 0);
+            }
+            if (at == null) {
+                continue;
+            }
+            Scanner scanner = new Scanner(snapshot, new Start(at.segment(), at.entry().offset()));
+            for (ChatMessage message = scanner.next(); message != null; message = scanner.next()) {
+                int order = message.getId().compareTo(id);
+                if (order > 0) {
+                    break;
+                }
+                if (order == 0 && (receiverId == null || receiverId.equals(message.getReceiverId()))) {
+                    highest = Math.max(highest, message.getSequence());
+                }
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Records that {@code readerId} has read everything up to {@code upToSequence}.
+     *
+     * @return how many messages to the reader that newly covers
+     */
+    long markReadUpTo(String readerId, long upToSequence) {
+        List<Segment> snapshot;
+        Start start;
+        long previous;
+        long target;
+        synchronized (this) {
+            target = Math.min(upToSequence, lastOrdinal);
+            previous = watermarks.getOrDefault(readerId, 0L);
+            if (target <= previous) {
+                return 0;
+            }
+            byte[] body = encode(new WatermarkRecord(readerId, target));
+            Segment segment = writable(body.length);
+            segment.append(Segment.WATERMARK, body);
+            segment.watermarks.merge(readerId, target, Math::max);
+            segment.watermarkRecords++;
+            watermarks.put(readerId, target);
+            onWrite.accept(segment);
+
+            snapshot = List.copyOf(segments);
+            start = locateOrdinal(previous + 1);
+        }
+
+        long marked = 0;
+        Scanner scanner = new Scanner(snapshot, start);
+        for (ChatMessage message = scanner.next(); message != null && message.getSequence() <= target; message = scanner.next()) {
+            if (message.getSequence() > previous && readerId.equals(message.getReceiverId())) {
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * Rewrites sealed segments holding at least {@code minWatermarkRecords} watermark
+     * records: read flags are folded into the messages and only the latest watermark
+     * per reader is kept. The rewrite goes to a side file that is renamed over the
+     * segment, so a crash leaves either the old or the new segment.
+     *
+     * @return bytes reclaimed
+     */
+    long compact(int minWatermarkRecords) throws IOException {
+        List<Segment> candidates;
+        synchronized (this) {
+            candidates = segments.stream()
+                    // A compacted segment keeps one record per reader; never compact that again
+                    .filter(segment -> segment.sealed && segment.watermarkRecords >= minWatermarkRecords
+                            && segment.watermarkRecords > watermarks.size())
+                    .toList();
+        }
+
+        long reclaimed = 0;
+        for (Segment segment : candidates) {
+            Map<String, Long> marks = Map.copyOf(watermarks);
+            List<byte[]> messages = new ArrayList<>();
+            int bytes = 0;
+            for (int offset = 0; ; ) {
+                Segment.Record record = segment.read(offset, segment.end());
+                if (record == null) {
+                    break;
+                }
+                if (record.type() == Segment.MESSAGE) {
+                    byte[] body = encode(applyWatermarks(decode(record.body()), marks));
+                    messages.add(body);
+                    bytes += Segment.HEADER_BYTES + body.length;
+                }
+                offset = record.next();
+            }
+            List<byte[]> watermarkBodies = new ArrayList<>();
+            for (Map.Entry<String, Long> mark : marks.entrySet()) {
+                byte[] body = encode(new WatermarkRecord(mark.getKey(), mark.getValue()));
+                watermarkBodies.add(body);
+                bytes += Segment.HEADER_BYTES + body.length;
+            }
+
+            Path side = segment.path.resolveSibling(segment.path.getFileName() + COMPACTING_SUFFIX);
+            Files.deleteIfExists(side);
+            Segment compacted = Segment.map(side, segment.path, segment.baseOrdinal, bytes + 4, true);
+            long ordinal = segment.baseOrdinal;
+            int since = 0;
+            for (byte[] body : messages) {
+                int offset = compacted.append(Segment.MESSAGE, body);
+                if (compacted.entries.isEmpty() || ++since >= indexInterval) {
+                    ChatMessage message = decode(body);
+                    compacted.entries.add(new Segment.IndexEntry(ordinal, offset, message.getTimestamp(), message.getId()));
+                    since = 0;
+                }
+                compacted.lastOrdinal = ordinal++;
+            }
+            for (byte[] body : watermarkBodies) {
+                compacted.append(Segment.WATERMARK, body);
+                compacted.watermarkRecords++;
+            }
+            compacted.watermarks.putAll(marks);
+            compacted.sealed = true;
+            compacted.force();
+
+            boolean idle;
+            synchronized (this) {
+                int index = segments.indexOf(segment);
+                if (index < 0) {
+                    compacted.close();
+                    Files.deleteIfExists(side);
+                    continue;
+                }
+                // Index first: a stale index over a compacted segment would point at wrong offsets
+                SegmentIndexFile.delete(segment.path);
+                Files.move(side, segment.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                SegmentIndexFile.write(compacted);
+                segments.set(index, compacted);
+                idle = users == 0;
+                if (!idle) {
+                    retired.add(segment);
+                }
+            }
+            if (idle) {
+                segment.close();
+            }
+            reclaimed += Math.max(0, segment.end() - compacted.end());
+        }
+        return reclaimed;
+    }
+
+    ChatMessage applyWatermarks(ChatMessage message) {
+        return applyWatermarks(message, watermarks);
+    }
+
+    private static ChatMessage applyWatermarks(ChatMessage message, Map<String, Long> marks) {
+        if (!message.isRead() && message.getReceiverId() != null
+                && marks.getOrDefault(message.getReceiverId(), 0L) >= message.getSequence()) {
+            message.setRead(true);
+        }
+        return message;
+    }
+
+    // Caller holds the lock
+    private Segment writable(int bodyLength) {
+        Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        int needed = Segment.HEADER_BYTES + bodyLength + 4;
+        if (active != null && !active.sealed && active.remaining() >= needed) {
+            return active;
+        }
+        if (needed > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + bodyLength + " bytes does not fit a "
+                    + segmentBytes + " byte segment");
+        }
+        try {
+            if (active != null && !active.sealed) {
+                active.sealed = true;
+                active.force();
+                SegmentIndexFile.write(active);
+            }
+            Files.createDirectories(directory);
+            Path path = directory.resolve("%020d%s".formatted(lastOrdinal + 1, SEGMENT_SUFFIX));
+            if (Files.exists(path)) {
+                throw new IllegalStateException("Segment " + path + " already exists");
+            }
+            Segment segment = Segment.map(path, path, lastOrdinal + 1, segmentBytes, true);
+            segments.add(segment);
+            sinceIndexed = 0;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot roll segment of conversation " + conversationId, e);
+        }
+    }
+
+    // Caller holds the lock. Start of the last index entry at or before the ordinal
+    private Start locateOrdinal(long ordinal) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.baseOrdinal <= ordinal || i == 0) {
+                int entry = lastMatching(segment.entries, e -> e.ordinal() <= ordinal);
+                return new Start(i, entry >= 0 ? segment.entries.get(entry).offset() : 0);
+            }
+        }
+        return new Start(0, 0);
+    }
+
+    // Caller holds the lock. The predicate must hold for a prefix of the log
+    private Located lastEntry(Predicate<Segment.IndexEntry> atOrBefore) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            List<Segment.IndexEntry> entries = segments.get(i).entries;
+            if (!entries.isEmpty() && atOrBefore.test(entries.get(0))) {
+                return new Located(i, entries.get(lastMatching(entries, atOrBefore)));
+            }
+        }
+        return null;
+    }
+
+    private static int lastMatching(List<Segment.IndexEntry> entries, Predicate<Segment.IndexEntry> atOrBefore) {
+        int low = 0;
+        int high = entries.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (atOrBefore.test(entries.get(mid))) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static ObjectId successor(ObjectId id) {
+        byte[] bytes = id.toByteArray();
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (++bytes[i] != 0) {
+                break;
+            }
+        }
+        return new ObjectId(bytes);
+    }
+
+    private static int compare(Segment.IndexEntry entry, MessageCursor position) {
+        int byTime = entry.timestamp().compareTo(position.timestamp());
+        return byTime != 0 ? byTime : entry.id().compareTo(position.id());
+    }
+
+    private static int compare(ChatMessage message, MessageCursor position) {
+        int byTime = message.getTimestamp().compareTo(position.timestamp());
+        return byTime != 0 ? byTime : message.getId().compareTo(position.id());
+    }
+
+    private byte[] encode(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ChatMessage decode(byte[] body) {
+        try {
+            return mapper.readValue(body, ChatMessage.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Undecodable message in conversation " + conversationId, e);
+        }
+    }
+
+    private WatermarkRecord decodeWatermark(byte[] body) {
+        try {
+            return mapper.readValue(body, WatermarkRecord.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Undecodable watermark in conversation " + conversationId, e);
+        }
+    }
+
+    /**
+     * Forward iteration over messages from a start position, across segments,
+     * up to what each segment has published.
+     */
+    private final class Scanner {
+        private final List<Segment> snapshot;
+        private int segment;
+        private int offset;
+
+        private Scanner(List<Segment> snapshot, Start start) {
+            this.snapshot = snapshot;
+            this.segment = start.segment();
+            this.offset = start.offset();
+        }
+
+        private ChatMessage next() {
+            while (segment < snapshot.size()) {
+                Segment current = snapshot.get(segment);
+                Segment.Record record = current.read(offset, current.end());
+                if (record == null) {
+                    segment++;
+                    offset = 0;
+                    continue;
+                }
+                offset = record.next();
+                if (record.type() == Segment.MESSAGE) {
+                    return applyWatermarks(decode(record.body()));
+                }
+            }
+            return null;
+        }
+    }
+
+    private record Start(int segment, int offset) {}
+
+    private record Located(int segment, Segment.IndexEntry entry) {}
+
+    record WatermarkRecord(String readerId, long upToSequence) {}
+}
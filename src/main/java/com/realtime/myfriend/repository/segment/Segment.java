@@ -0,0 +1,192 @@
+package com.realtime.myfriend.repository.segment;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped segment file of a conversation log, named after the ordinal of
+ * its first message. Records are {@code [int length][int crc32c][byte type][body]};
+ * a zero length marks the end. The length is written last, so a torn append reads
+ * as the end of the segment or fails its checksum.
+ *
+ * <p>Only the owning {@link ConversationLog} appends, under its lock. Readers scan
+ * without it up to the published {@link #end()}.</p>
+ */
+final class Segment {
+
+    static final byte MESSAGE = 1;
+    static final byte WATERMARK = 2;
+    static final int HEADER_BYTES = 9;
+
+    final Path path;
+    final long baseOrdinal;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private volatile int end;
+    private int forced;
+    private boolean closed; // guarded by this
+
+    // Guarded by the owning log
+    final List<IndexEntry> entries = new ArrayList<>();
+    final Map<String, Long> watermarks = new HashMap<>(); // recorded in this segment
+    long lastOrdinal;
+    int watermarkRecords;
+    boolean sealed;
+
+    private Segment(Path path, long baseOrdinal, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseOrdinal = baseOrdinal;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+        this.lastOrdinal = baseOrdinal - 1;
+    }
+
+    /**
+     * Maps {@code file} (creating it if needed) and presents it under {@code path}.
+     * Compaction maps its temporary file this way before renaming it into place.
+     */
+    static Segment map(Path file, Path path, long baseOrdinal, int size, boolean writable) throws IOException {
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        // The mapping outlives the channel, so no descriptor stays open per segment
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            // A writable segment never maps less than is already on disk
+            int length = (int) (writable ? Math.max(size, channel.size()) : Math.min(size, channel.size()));
+            MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, length);
+            return new Segment(path, baseOrdinal, buffer);
+        }
+    }
+
+    int end() {
+        return end;
+    }
+
+    int remaining() {
+        return capacity - end;
+    }
+
+    /**
+     * @return the record's offset, or -1 if it does not fit
+     */
+    int append(byte type, byte[] body) {
+        int offset = end;
+        int length = body.length + 1;
+        if (offset + HEADER_BYTES - 1 + length + 4 > capacity) { // keep room for the end marker
+            return -1;
+        }
+        buffer.put(offset + HEADER_BYTES - 1, type);
+        buffer.put(offset + HEADER_BYTES, body);
+        buffer.putInt(offset + 4, checksum(type, body));
+        buffer.putInt(offset, length);
+        end = offset + 4 + 4 + length; // publishes the record to readers
+        return offset;
+    }
+
+    /**
+     * The record at {@code offset}, or {@code null} past the end or at a damaged record.
+     * {@code limit} is {@link #end()} for normal reads and the capacity during recovery.
+     */
+    Record read(int offset, int limit) {
+        if (offset + HEADER_BYTES > limit) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + 8 + length > limit) {
+            return null;
+        }
+        byte type = buffer.get(offset + HEADER_BYTES - 1);
+        byte[] body = new byte[length - 1];
+        buffer.get(offset + HEADER_BYTES, body);
+        if (buffer.getInt(offset + 4) != checksum(type, body)) {
+            return null;
+        }
+        return new Record(type, body, offset + 8 + length);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Whether nothing follows {@code offset}, i.e. recovery stopped at a clean end.
+     */
+    boolean isCleanAt(int offset) {
+        for (int i = offset; i < Math.min(capacity, offset + HEADER_BYTES); i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Recovery found a damaged tail at {@code offset}: drop it so new appends are not
+     * followed by stale bytes that could parse as records.
+     */
+    void truncate(int offset) {
+        for (int i = offset; i < capacity; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        end = offset;
+        forced = Math.min(forced, offset);
+        buffer.force();
+    }
+
+    void recovered(int offset) {
+        end = offset;
+        forced = offset;
+    }
+
+    /**
+     * Forces what was appended since the last call; only the log's flusher calls this.
+     * A no-op once the segment is closed.
+     */
+    synchronized void force() {
+        if (closed) {
+            return;
+        }
+        int upTo = end;
+        if (upTo > forced) {
+            buffer.force(forced, upTo - forced);
+            forced = upTo;
+        }
+    }
+
+    /**
+     * Forces and unmaps the segment. The owning log calls this only once no reader or
+     * writer can still reach the buffer; the flusher may still hold it, hence the lock.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        force();
+        closed = true;
+        Unmapper.unmap(buffer);
+    }
+
+    private static int checksum(byte type, byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    record Record(byte type, byte[] body, int next) {}
+
+    /**
+     * Sparse index point: the message with this ordinal starts at {@code offset}.
+     */
+    record IndexEntry(long ordinal, int offset, LocalDateTime timestamp, String id) {}
+}
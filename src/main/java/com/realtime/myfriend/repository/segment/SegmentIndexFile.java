@@ -0,0 +1,126 @@
+package com.realtime.myfriend.repository.segment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Sparse index of a sealed segment, saved next to it as {@code <base>.idx} so
+ * recovery can skip scanning segments that can no longer change. Holds the index
+ * entries, the segment's end and counters, and the read watermarks recorded in it.
+ * Anything missing or failing its checksum is rebuilt by scanning the segment.
+ */
+final class SegmentIndexFile {
+
+    private static final int MAGIC = 0x4D465349; // "MFSI"
+    private static final int VERSION = 1;
+
+    private SegmentIndexFile() {
+    }
+
+    static Path pathFor(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - ".log".length()) + ".idx");
+    }
+
+    static void write(Segment segment) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(segment.end());
+        out.writeLong(segment.lastOrdinal);
+        out.writeInt(segment.watermarkRecords);
+        out.writeInt(segment.entries.size());
+        for (Segment.IndexEntry entry : segment.entries) {
+            out.writeLong(entry.ordinal());
+            out.writeInt(entry.offset());
+            out.writeLong(entry.timestamp().toInstant(ZoneOffset.UTC).toEpochMilli());
+            out.writeUTF(entry.id());
+        }
+        out.writeInt(segment.watermarks.size());
+        for (Map.Entry<String, Long> watermark : segment.watermarks.entrySet()) {
+            out.writeUTF(watermark.getKey());
+            out.writeLong(watermark.getValue());
+        }
+        out.flush();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+
+        Path target = pathFor(segment.path);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads the saved index into {@code segment}.
+     *
+     * @return false if there is no usable index file
+     */
+    static boolean read(Segment segment) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(pathFor(segment.path));
+        } catch (IOException e) {
+            return false; // missing or unreadable: rebuilt by scanning
+        }
+        if (bytes.length < 8) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 8);
+        long expected = ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong();
+        if (crc.getValue() != expected) {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 8)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            int end = in.readInt();
+            long lastOrdinal = in.readLong();
+            int watermarkRecords = in.readInt();
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                long ordinal = in.readLong();
+                int offset = in.readInt();
+                LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.UTC);
+                segment.entries.add(new Segment.IndexEntry(ordinal, offset, timestamp, in.readUTF()));
+            }
+            Map<String, Long> recorded = new HashMap<>();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                recorded.put(in.readUTF(), in.readLong());
+            }
+            segment.watermarks.putAll(recorded);
+            segment.recovered(end);
+            segment.lastOrdinal = lastOrdinal;
+            segment.watermarkRecords = watermarkRecords;
+            segment.sealed = true;
+            return true;
+        } catch (IOException e) {
+            segment.entries.clear();
+            return false;
+        }
+    }
+
+    static void delete(Path segment) throws IOException {
+        Files.deleteIfExists(pathFor(segment));
+    }
+}
@@ -0,0 +1,379 @@
+package com.realtime.myfriend.repository.segment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.helper.CborMessageConverter;
+import com.realtime.myfriend.repository.MessageStore;
+import com.realtime.myfriend.util.MessageCursor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Self-contained {@link MessageStore} for deployments without MongoDB: one
+ * append-only {@link ConversationLog} per conversation under {@code directory},
+ * in memory-mapped segments encoded as CBOR.
+ *
+ * <p>Appends are group-committed: a single flusher forces every segment written
+ * since its last pass, every {@code fsync-interval-ms} or as soon as
+ * {@code fsync-batch} appends are waiting. With {@code sync-on-append} a caller
+ * wakes the flusher and returns only once its pass completed; appends arriving
+ * while a pass runs share the next one.</p>
+ *
+ * <p>Logs are opened, and recovered, on first use. Each open log maps its segments,
+ * so at most {@code max-open-conversations} stay open: the least recently used, and
+ * any idle for {@code idle-close-ms}, are forced, unmapped and reopened on demand.
+ * Reads of conversations that were never written open nothing.</p>
+ */
+@Repository
+@ConditionalOnProperty(prefix = "app.chat.store", name = "type", havingValue = "segment-log")
+public class SegmentLogMessageStore implements MessageStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogMessageStore.class);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final long fsyncIntervalNanos;
+    private final int fsyncBatch;
+    private final boolean syncOnAppend;
+    private final int compactionMinWatermarks;
+    private final int maxOpenConversations;
+    private final ObjectMapper mapper = CborMessageConverter.defaultMapper();
+
+    private final Cache<String, ConversationLog> logs;
+    // Evicted logs still finishing their operations; reopening waits for them
+    private final ConcurrentMap<String, ConversationLog> closing = new ConcurrentHashMap<>();
+    private final Set<Segment> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<CompletableFuture<Void>> nextSync = new AtomicReference<>(new CompletableFuture<>());
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final Timer fsyncLatency;
+    private final DistributionSummary fsyncSegments;
+    private final Counter compactedBytes;
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    public SegmentLogMessageStore(
+            @Value("${app.chat.store.segment-log.directory:data/messages}") String directory,
+            @Value("${app.chat.store.segment-log.segment-bytes:1048576}") int segmentBytes,
+            @Value("${app.chat.store.segment-log.index-interval:32}") int indexInterval,
+            @Value("${app.chat.store.segment-log.fsync-interval-ms:5}") long fsyncIntervalMs,
+            @Value("${app.chat.store.segment-log.fsync-batch:64}") int fsyncBatch,
+            @Value("${app.chat.store.segment-log.sync-on-append:true}") boolean syncOnAppend,
+            @Value("${app.chat.store.segment-log.compaction-min-watermarks:256}") int compactionMinWatermarks,
+            @Value("${app.chat.store.segment-log.max-open-conversations:4096}") int maxOpenConversations,
+            @Value("${app.chat.store.segment-log.idle-close-ms:600000}") long idleCloseMs,
+            MeterRegistry meterRegistry) {
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = Math.max(1, indexInterval);
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.fsyncBatch = fsyncBatch;
+        this.syncOnAppend = syncOnAppend;
+        this.compactionMinWatermarks = compactionMinWatermarks;
+        this.maxOpenConversations = maxOpenConversations;
+        this.logs = Caffeine.newBuilder()
+                .maximumSize(maxOpenConversations)
+                .expireAfterAccess(Duration.ofMillis(idleCloseMs))
+                // Runs atomically with the eviction, so a reopen always finds the log in closing
+                .evictionListener((String conversationId, ConversationLog log, RemovalCause cause) -> {
+                    if (log != null) {
+                        closing.put(conversationId, log);
+                        log.closed().thenRun(() -> closing.remove(conversationId, log));
+                        log.close();
+                    }
+                })
+                .build();
+
+        this.fsyncLatency = Timer.builder("chat.store.fsync.latency")
+                .description("Forcing all segments written since the previous pass")
+                .register(meterRegistry);
+        this.fsyncSegments = DistributionSummary.builder("chat.store.fsync.segments")
+                .description("Segments forced per flusher pass")
+                .register(meterRegistry);
+        this.compactedBytes = Counter.builder("chat.store.compaction.reclaimed")
+                .description("Bytes reclaimed by segment compaction")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chat.store.open.conversations", logs, Cache::estimatedSize)
+                .description("Conversation logs open in this process")
+                .register(meterRegistry);
+        Gauge.builder("chat.store.open.conversations.max", () -> maxOpenConversations)
+                .description("Configured limit of open conversation logs")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = Thread.ofPlatform().name("segment-log-fsync").daemon().start(this::runFlushLoop);
+        logger.info("Segment log message store at {}: segmentBytes={}, fsyncIntervalMs={}, syncOnAppend={}, maxOpen={}",
+                directory.toAbsolutePath(), segmentBytes, TimeUnit.NANOSECONDS.toMillis(fsyncIntervalNanos), syncOnAppend,
+                maxOpenConversations);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        syncPass();
+        logs.asMap().values().forEach(ConversationLog::close);
+        logs.invalidateAll();
+    }
+
+    @Override
+    public ChatMessage append(ChatMessage message) {
+        CompletableFuture<Void> synced = write(message.getConversationId(), List.of(message));
+        awaitSync(synced);
+        return message;
+    }
+
+    @Override
+    public List<ChatMessage> appendAll(List<ChatMessage> messages) {
+        Map<String, List<ChatMessage>> byConversation = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            byConversation.computeIfAbsent(message.getConversationId(), k -> new ArrayList<>()).add(message);
+        }
+        CompletableFuture<Void> synced = null;
+        for (Map.Entry<String, List<ChatMessage>> entry : byConversation.entrySet()) {
+            synced = write(entry.getKey(), entry.getValue());
+        }
+        // The last pass requested covers every earlier write
+        if (synced != null) {
+            awaitSync(synced);
+        }
+        return messages;
+    }
+
+    @Override
+    public List<ChatMessage> page(String conversationId, MessageCursor position, boolean older, int limit) {
+        return read(conversationId, log -> log.page(position, older, limit), List.of());
+    }
+
+    @Override
+    public List<ChatMessage> afterSequence(String conversationId, long sequence, int limit) {
+        return read(conversationId, log -> log.afterSequence(sequence, limit), List.of());
+    }
+
+    @Override
+    public long currentSequence(String conversationId) {
+        return read(conversationId, ConversationLog::lastOrdinal, 0L);
+    }
+
+    @Override
+    public long lastStoredSequence(String conversationId) {
+        // Ordinals are handed out under the log lock in write order, so nothing below is in flight
+        return currentSequence(conversationId);
+    }
+
+    @Override
+    public Map<String, Long> currentSequences(Collection<String> conversationIds) {
+        Map<String, Long> sequences = new HashMap<>();
+        for (String conversationId : conversationIds) {
+            long current = currentSequence(conversationId);
+            if (current > 0) {
+                sequences.put(conversationId, current);
+            }
+        }
+        return sequences;
+    }
+
+    @Override
+    public long highestSequence(String conversationId, Collection<String> messageIds) {
+        return read(conversationId, log -> log.highestSequence(messageIds, null), 0L);
+    }
+
+    @Override
+    public long markReadUpTo(String conversationId, String readerId, long upToSequence) {
+        long marked = read(conversationId, log -> log.markReadUpTo(readerId, upToSequence), 0L);
+        requestSync();
+        return marked;
+    }
+
+    /**
+     * Read state here is a per-reader watermark, so this marks everything up to the
+     * newest of the given messages, like a read receipt does.
+     */
+    @Override
+    public long markRead(String conversationId, String readerId, Collection<String> messageIds) {
+        long marked = read(conversationId, log -> {
+            long upTo = log.highestSequence(messageIds, readerId);
+            return upTo == 0 ? 0L : log.markReadUpTo(readerId, upTo);
+        }, 0L);
+        requestSync();
+        return marked;
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.store.segment-log.compaction-interval-ms:600000}")
+    public void compact() {
+        long reclaimed = 0;
+        for (Map.Entry<String, ConversationLog> entry : logs.asMap().entrySet()) {
+            ConversationLog log = entry.getValue();
+            if (!log.retain()) {
+                continue;
+            }
+            try {
+                reclaimed += log.compact(compactionMinWatermarks);
+            } catch (IOException | UncheckedIOException e) {
+                logger.error("Compaction of conversation {} failed: {}", entry.getKey(), e.getMessage());
+            } finally {
+                log.release();
+            }
+        }
+        if (reclaimed > 0) {
+            compactedBytes.increment(reclaimed);
+            logger.info("Compaction reclaimed {} bytes", reclaimed);
+        }
+    }
+
+    private CompletableFuture<Void> write(String conversationId, List<ChatMessage> messages) {
+        withLog(conversationId, log -> {
+            log.append(messages);
+            return null;
+        });
+        // Taken after the writes marked their segments dirty, so the pass it belongs to forces them
+        CompletableFuture<Void> synced = nextSync.get();
+        requestSync();
+        return synced;
+    }
+
+    private void awaitSync(CompletableFuture<Void> synced) {
+        if (syncOnAppend) {
+            if (flusher != null) {
+                LockSupport.unpark(flusher);
+            }
+            synced.join();
+        }
+    }
+
+    private void requestSync() {
+        if (waiting.incrementAndGet() >= fsyncBatch && flusher != null) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Like {@link #withLog}, but a conversation that was never written is answered
+     * with {@code absent} instead of being opened.
+     */
+    private <T> T read(String conversationId, Function<ConversationLog, T> action, T absent) {
+        if (logs.getIfPresent(conversationId) == null && !Files.isDirectory(pathFor(conversationId))) {
+            return absent;
+        }
+        return withLog(conversationId, action);
+    }
+
+    private <T> T withLog(String conversationId, Function<ConversationLog, T> action) {
+        while (true) {
+            ConversationLog log = logs.get(conversationId, this::open);
+            if (log.retain()) {
+                try {
+                    return action.apply(log);
+                } finally {
+                    log.release();
+                }
+            }
+            // Evicted between lookup and retain; the next lookup opens it again
+        }
+    }
+
+    private ConversationLog open(String conversationId) {
+        ConversationLog previous = closing.get(conversationId);
+        if (previous != null) {
+            // Two open logs over one directory would both append to the active segment
+            previous.closed().join();
+        }
+        try {
+            return ConversationLog.open(conversationId, pathFor(conversationId), segmentBytes, indexInterval, mapper,
+                    dirty::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open log of conversation " + conversationId, e);
+        }
+    }
+
+    // Two-level layout keeps directories small: <hash byte>/<base64url(conversationId)>
+    private Path pathFor(String conversationId) {
+        String shard = "%02x".formatted(conversationId.hashCode() & 0xff);
+        String name = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(conversationId.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(shard).resolve(name);
+    }
+
+    private void runFlushLoop() {
+        while (running) {
+            if (waiting.get() < fsyncBatch) {
+                LockSupport.parkNanos(fsyncIntervalNanos);
+            }
+            syncPass();
+        }
+    }
+
+    private void syncPass() {
+        waiting.set(0);
+        CompletableFuture<Void> pass = nextSync.getAndSet(new CompletableFuture<>());
+        List<Segment> forced = new ArrayList<>();
+        for (Segment segment : dirty) {
+            dirty.remove(segment);
+            forced.add(segment);
+        }
+        if (forced.isEmpty()) {
+            pass.complete(null);
+            return;
+        }
+
+        Timer.Sample sample = Timer.start();
+        try {
+            for (Segment segment : forced) {
+                segment.force();
+            }
+            pass.complete(null);
+        } catch (Exception e) {
+            logger.error("Forcing {} segments failed: {}", forced.size(), e.getMessage());
+            pass.completeExceptionally(e);
+        } finally {
+            sample.stop(fsyncLatency);
+            fsyncSegments.record(forced.size());
+        }
+    }
+}
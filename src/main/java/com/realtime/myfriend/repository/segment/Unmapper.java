@@ -0,0 +1,51 @@
+package com.realtime.myfriend.repository.segment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases a mapping right away instead of whenever the buffer is collected, which
+ * may be long after the process has run into {@code vm.max_map_count}. Touching the
+ * buffer afterwards crashes the JVM, so callers must know it is unreachable.
+ */
+final class Unmapper {
+    private static final Logger logger = LoggerFactory.getLogger(Unmapper.class);
+
+    private static final MethodHandle INVOKE_CLEANER = lookup();
+
+    private Unmapper() {
+    }
+
+    static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return; // left to the garbage collector
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            logger.warn("Unmapping a segment failed, leaving it to the garbage collector: {}", e.getMessage());
+        }
+    }
+
+    private static MethodHandle lookup() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Explicit unmapping is unavailable, closed segments stay mapped until collected: {}",
+                    e.getMessage());
+            return null;
+        }
+    }
+}
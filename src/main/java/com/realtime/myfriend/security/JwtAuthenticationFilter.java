@@ -8,7 +8,9 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -17,6 +19,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
@@ -26,7 +29,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserStatusChecker userStatusChecker;
 
+    // Build the principal from token claims instead of loading the user on every request
+    @Value("${app.security.stateless-auth:true}")
+    private boolean statelessAuth;
 
 
     @Override
@@ -57,10 +64,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         logger.debug("JWT token found: {}", jwt);
 
         try {
-            username = jwtService.extractUsername(jwt);
+            JwtClaims claims = jwtService.verify(jwt);
+            username = claims.subject();
             logger.debug("Extracted username from token: {}", username);
 
-            if (username != null) {
+            if (username != null && statelessAuth && claims.userId() != null && claims.role() != null) {
+                authenticateFromClaims(claims, request);
+            } else if (username != null) {
                 logger.debug("SecurityContext before: {}", SecurityContextHolder.getContext().getAuthentication());
 
                 // Load user details from DB
@@ -68,7 +78,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 logger.debug("Loaded user details: username={}, authorities={}", userDetails.getUsername(), userDetails.getAuthorities());
 
                 // Validate token
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (jwtService.isTokenValid(claims, userDetails)) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
@@ -92,4 +102,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    private void authenticateFromClaims(JwtClaims claims, HttpServletRequest request) {
+        if (claims.isExpired()) {
+            logger.debug("Token is not valid");
+            return;
+        }
+        if (!userStatusChecker.isEnabled(claims.userId())) {
+            logger.debug("User {} from token no longer exists", claims.subject());
+            return;
+        }
+
+        JwtPrincipal principal = new JwtPrincipal(claims.userId(), claims.subject(), claims.role());
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                principal,
+                null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + claims.role()))
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+        logger.debug("Authentication set from token claims: {}", principal);
+    }
 }
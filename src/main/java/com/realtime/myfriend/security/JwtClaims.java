@@ -0,0 +1,25 @@
+package com.realtime.myfriend.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+
+/**
+ * Immutable view of a token that has already passed signature verification.
+ */
+public record JwtClaims(String subject, String userId, String role, Instant issuedAt, Instant expiresAt) {
+
+    static JwtClaims from(Claims claims) {
+        return new JwtClaims(
+                claims.getSubject(),
+                claims.get("userId", String.class),
+                claims.get("role", String.class),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null
+        );
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && !expiresAt.isAfter(Instant.now());
+    }
+}
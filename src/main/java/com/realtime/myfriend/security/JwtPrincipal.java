@@ -0,0 +1,28 @@
+package com.realtime.myfriend.security;
+
+import java.io.Serializable;
+import java.security.Principal;
+
+/**
+ * Principal rebuilt from verified token claims, without touching the user store.
+ * Exposes {@code id} so expressions like {@code #id == principal.id} keep working.
+ */
+public record JwtPrincipal(String id, String username, String role) implements Principal, Serializable {
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
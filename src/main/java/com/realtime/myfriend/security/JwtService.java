@@ -1,22 +1,34 @@
 package com.realtime.myfriend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.realtime.myfriend.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
@@ -28,17 +40,53 @@ public class JwtService {
     @Value("${app.jwt.expiration-ms}")
     private long jwtExpiration;
 
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    @Value("${app.jwt.verified-cache-size:10000}")
+    private long verifiedCacheSize;
+
+    // Built once from the secret; the parser is immutable and thread-safe
+    private Key signInKey;
+    private JwtParser parser;
+
+    // SHA-256(token) -> claims, each entry living no longer than its token
+    private Cache<String, JwtClaims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
+    /**
+     * Verifies the token once and returns its claims; repeat calls for the same
+     * token are served from the cache until the token expires.
+     */
+    public JwtClaims verify(String token) {
+        String digest = digest(token);
+        JwtClaims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                return cached;
+            }
+            verifiedTokens.invalidate(digest);
+        }
+
+        JwtClaims claims = JwtClaims.from(extractAllClaims(token));
+        verifiedTokens.put(digest, claims);
+        return claims;
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public String extractUsername(String token) {
+        return verify(token).subject();
     }
 
     public String extractUserId(String token) {
-        return extractClaim(token, claims -> claims.get("userId", String.class));
+        return verify(token).userId();
     }
 
     public CompletableFuture<String> generateToken(User user) {
@@ -57,39 +105,60 @@ public class JwtService {
                 .setSubject(username) // Set username as subject
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return isTokenValid(verify(token), userDetails);
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public boolean isTokenValid(JwtClaims claims, UserDetails userDetails) {
+        return claims.subject().equals(userDetails.getUsername()) && !claims.isExpired();
     }
 
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts
-                    .parserBuilder()
-                    .setSigningKey(getSignInKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            return parser.parseClaimsJws(token).getBody();
+        } catch (ExpiredJwtException e) {
+            logger.debug("JWT expired at {}", e.getClaims().getExpiration());
+            throw e;
         } catch (Exception e) {
             logger.error("Error extracting JWT claims: {}", e.getMessage());
             throw e;
         }
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class TokenExpiry implements Expiry<String, JwtClaims> {
+        @Override
+        public long expireAfterCreate(String key, JwtClaims claims, long currentTime) {
+            return remainingNanos(claims);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtClaims claims, long currentTime, long currentDuration) {
+            return remainingNanos(claims);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private static long remainingNanos(JwtClaims claims) {
+            if (claims.expiresAt() == null) {
+                return Long.MAX_VALUE;
+            }
+            return Math.max(0, Duration.between(Instant.now(), claims.expiresAt()).toNanos());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package com.realtime.myfriend.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP side of the rate limiter: over-limit requests get 429 with {@code Retry-After}.
+ * Runs after JWT authentication so requests are keyed by principal.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        RateLimitProperties.Rule rule = rateLimiter.ruleForRequest(request.getMethod(), path);
+        if (rule == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String principal = authentication != null && authentication.isAuthenticated()
+                ? authentication.getName()
+                : "ip:" + request.getRemoteAddr();
+
+        long wait = rateLimiter.tryAcquire(rule, principal, "http");
+        if (wait > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait) + 1)));
+            response.setContentType("text/plain");
+            response.getWriter().write("Rate limit exceeded");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,35 @@
+package com.realtime.myfriend.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Buckets of principals idle this long are dropped
+    private Duration idleEviction = Duration.ofMinutes(10);
+    private long maxTrackedPrincipals = 100_000;
+
+    // Minimum gap between two rejection frames to the same principal
+    private Duration rejectionNoticeInterval = Duration.ofSeconds(1);
+
+    private List<Rule> rules = new ArrayList<>();
+
+    @Data
+    public static class Rule {
+        private String name;
+        private List<String> destinations = new ArrayList<>(); // STOMP SEND destinations, e.g. /app/chat.send
+        private List<String> paths = new ArrayList<>();        // "METHOD /path", e.g. "POST /chat/send"
+        private long capacity;                                 // burst size
+        private double refillPerSecond;                        // sustained rate
+    }
+}
@@ -0,0 +1,94 @@
+package com.realtime.myfriend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.realtime.myfriend.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-principal token buckets for the rules in {@link RateLimitProperties}, shared by
+ * the STOMP interceptor and the servlet filter so both transports draw from the same
+ * budget.
+ */
+@Component
+public class RateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RateLimitProperties.Rule> rulesByDestination = new HashMap<>();
+    private final Map<String, RateLimitProperties.Rule> rulesByPath = new HashMap<>();
+
+    // "rule|principal" -> bucket
+    private final Cache<String, TokenBucket> buckets;
+    // principal -> last rejection notice, nanoTime
+    private final Cache<String, AtomicLong> lastNotice;
+
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTrackedPrincipals() * Math.max(1, properties.getRules().size()))
+                .expireAfterAccess(properties.getIdleEviction())
+                .build();
+        this.lastNotice = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTrackedPrincipals())
+                .expireAfterAccess(properties.getIdleEviction())
+                .build();
+
+        for (RateLimitProperties.Rule rule : properties.getRules()) {
+            rule.getDestinations().forEach(destination -> rulesByDestination.put(destination, rule));
+            rule.getPaths().forEach(path -> rulesByPath.put(normalizePath(path), rule));
+        }
+        logger.info("Rate limiting {} with {} rules", properties.isEnabled() ? "enabled" : "disabled", properties.getRules().size());
+    }
+
+    public RateLimitProperties.Rule ruleForDestination(String destination) {
+        return properties.isEnabled() && destination != null ? rulesByDestination.get(destination) : null;
+    }
+
+    public RateLimitProperties.Rule ruleForRequest(String method, String path) {
+        return properties.isEnabled() ? rulesByPath.get(method.toUpperCase() + " " + path) : null;
+    }
+
+    /**
+     * @return 0 if allowed, otherwise nanoseconds until the principal may try again
+     */
+    public long tryAcquire(RateLimitProperties.Rule rule, String principal, String transport) {
+        TokenBucket bucket = buckets.get(rule.getName() + "|" + principal,
+                key -> new TokenBucket(rule.getCapacity(), rule.getRefillPerSecond()));
+        long wait = bucket.tryAcquire();
+        if (wait > 0) {
+            Counter.builder("rate.limit.throttled")
+                    .tag("rule", rule.getName())
+                    .tag("transport", transport)
+                    .description("Requests rejected by the per-principal rate limiter")
+                    .register(meterRegistry)
+                    .increment();
+        }
+        return wait;
+    }
+
+    /**
+     * Whether a rejection should be reported to the principal, at most once per notice interval.
+     */
+    public boolean shouldNotify(String principal) {
+        AtomicLong last = lastNotice.get(principal, key -> new AtomicLong(System.nanoTime() - properties.getRejectionNoticeInterval().toNanos()));
+        long previous = last.get();
+        long now = System.nanoTime();
+        return now - previous >= properties.getRejectionNoticeInterval().toNanos() && last.compareAndSet(previous, now);
+    }
+
+    private static String normalizePath(String path) {
+        String[] parts = path.trim().split("\\s+", 2);
+        return parts.length == 2 ? parts[0].toUpperCase() + " " + parts[1] : "POST " + parts[0];
+    }
+}
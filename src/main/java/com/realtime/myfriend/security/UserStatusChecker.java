@@ -0,0 +1,45 @@
+package com.realtime.myfriend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.realtime.myfriend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Short-lived "does this user still exist" answer for stateless authentication,
+ * so a deleted account is locked out within one TTL instead of at token expiry.
+ */
+@Component
+public class UserStatusChecker {
+
+    private final UserRepository userRepository;
+    private final Cache<String, Boolean> enabledUsers;
+    private final boolean checkEnabled;
+
+    public UserStatusChecker(
+            UserRepository userRepository,
+            @Value("${app.security.enabled-check-ttl:PT30S}") Duration ttl,
+            @Value("${app.security.enabled-check-max-size:100000}") long maxSize
+    ) {
+        this.userRepository = userRepository;
+        this.checkEnabled = !ttl.isZero() && !ttl.isNegative();
+        this.enabledUsers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(checkEnabled ? ttl : Duration.ofSeconds(1))
+                .build();
+    }
+
+    public boolean isEnabled(String userId) {
+        if (!checkEnabled) {
+            return true;
+        }
+        return enabledUsers.get(userId, userRepository::existsById);
+    }
+
+    public void invalidate(String userId) {
+        enabledUsers.invalidate(userId);
+    }
+}
@@ -0,0 +1,445 @@
+package com.realtime.myfriend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.realtime.myfriend.dtos.BroadcastNodeStatus;
+import com.realtime.myfriend.dtos.BroadcastRequest;
+import com.realtime.myfriend.dtos.BroadcastSegment;
+import com.realtime.myfriend.dtos.BroadcastStatus;
+import com.realtime.myfriend.entity.User;
+import com.realtime.myfriend.exception.InvalidOperationException;
+import com.realtime.myfriend.helper.CborMessageConverter;
+import com.realtime.myfriend.helper.HttpHandshakeInterceptor;
+import com.realtime.myfriend.helper.PayloadCodecNegotiator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Admin announcements to every session subscribed to {@code /user/queue/announcements},
+ * or to a segment of them. The request goes to every node over the
+ * {@link ClusterEventBus} and each node delivers to its own sessions: the payload is
+ * serialized once per codec and the frames go straight to {@code clientOutboundChannel},
+ * skipping the broker and user-destination resolution. Frames are dispatched in waves,
+ * and a wave waits while the outbound queue is backed up so chat traffic keeps flowing.
+ *
+ * <p>Nodes report their progress on the bus as well, so the status is the same on every
+ * node and lists each node that took part. A node that was down when the broadcast was
+ * sent never reports and is not covered.</p>
+ */
+@Service
+public class BroadcastService {
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastService.class);
+
+    public static final String ANNOUNCEMENT_DESTINATION = "/user/queue/announcements";
+
+    private static final String BROADCAST_EVENT = "broadcast";
+    private static final String PROGRESS_EVENT = "broadcast.progress";
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final MessageChannel clientOutboundChannel;
+    private final MessageConverter messageConverter;
+    private final PayloadCodecNegotiator codecNegotiator;
+    private final UserService userService;
+    private final MongoTemplate mongoTemplate;
+    private final ClusterEventBus clusterEventBus;
+    private final ObjectMapper objectMapper;
+    private final Counter framesDispatched;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${app.admin.broadcast.wave-size:500}")
+    private int waveSize;
+
+    @Value("${app.admin.broadcast.wave-interval-ms:50}")
+    private long waveIntervalMs;
+
+    // Outbound tasks queued above which the next wave waits
+    @Value("${app.admin.broadcast.max-outbound-backlog:1000}")
+    private int maxOutboundBacklog;
+
+    // sessionId -> the session's announcements subscription on this node
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+
+    private final Cache<String, ClusterBroadcast> broadcasts = Caffeine.newBuilder()
+            .maximumSize(100)
+            .expireAfterWrite(Duration.ofHours(24))
+            .build();
+
+    public BroadcastService(@Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                            @Qualifier("brokerMessageConverter") MessageConverter messageConverter,
+                            PayloadCodecNegotiator codecNegotiator, UserService userService,
+                            MongoTemplate mongoTemplate, ClusterEventBus clusterEventBus,
+                            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.messageConverter = messageConverter;
+        this.codecNegotiator = codecNegotiator;
+        this.userService = userService;
+        this.mongoTemplate = mongoTemplate;
+        this.clusterEventBus = clusterEventBus;
+        this.objectMapper = objectMapper;
+        this.framesDispatched = Counter.builder("admin.broadcast.frames")
+                .description("Broadcast frames handed to the outbound channel")
+                .register(meterRegistry);
+        clusterEventBus.on(BROADCAST_EVENT, this::onBroadcast);
+        clusterEventBus.on(PROGRESS_EVENT, this::onProgress);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Principal user = accessor.getUser();
+        if (user == null || !ANNOUNCEMENT_DESTINATION.equals(accessor.getDestination())) {
+            return;
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object transport = attributes != null ? attributes.get(HttpHandshakeInterceptor.TRANSPORT_ATTRIBUTE) : null;
+        targets.put(accessor.getSessionId(), new Target(accessor.getSessionId(), accessor.getSubscriptionId(),
+                user.getName(), transport != null ? transport.toString() : "unknown"));
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        if (sessionId != null) {
+            targets.computeIfPresent(sessionId, (id, target) ->
+                    target.subscriptionId().equals(accessor.getSubscriptionId()) ? null : target);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        targets.remove(event.getSessionId());
+    }
+
+    /**
+     * Sends the broadcast to every node, each of which starts delivery in the background.
+     */
+    public BroadcastStatus broadcast(BroadcastRequest request) {
+        if (request == null || request.getPayload() == null) {
+            throw new InvalidOperationException("Broadcast payload is required");
+        }
+
+        BroadcastCommand command = new BroadcastCommand(UUID.randomUUID().toString(), LocalDateTime.now(), request);
+        String event = write(command);
+        broadcasts.put(command.id(), new ClusterBroadcast(command.id(), command.startedAt()));
+        clusterEventBus.publish(BROADCAST_EVENT, event);
+
+        logger.info("Broadcast {} sent to every node", command.id());
+        return status(command.id());
+    }
+
+    public BroadcastStatus status(String broadcastId) {
+        ClusterBroadcast broadcast = broadcasts.getIfPresent(broadcastId);
+        return broadcast != null ? broadcast.snapshot() : null;
+    }
+
+    // On the relay's I/O thread: the segment may need Mongo, so everything happens off it
+    private void onBroadcast(String event) {
+        BroadcastCommand command = read(event, BroadcastCommand.class);
+        if (command == null) {
+            return;
+        }
+        ClusterBroadcast broadcast = broadcasts.get(command.id(), id -> new ClusterBroadcast(id, command.startedAt()));
+        Thread.ofVirtual().name("admin-broadcast-" + command.id()).start(() -> deliverLocally(broadcast, command.request()));
+    }
+
+    private void onProgress(String event) {
+        ProgressReport report = read(event, ProgressReport.class);
+        if (report != null) {
+            broadcasts.get(report.broadcastId(), id -> new ClusterBroadcast(id, report.startedAt()))
+                    .record(report.node());
+        }
+    }
+
+    private void deliverLocally(ClusterBroadcast broadcast, BroadcastRequest request) {
+        Progress progress = new Progress(broadcast.id);
+        List<Target> recipients;
+        byte[] json;
+        byte[] cbor;
+        try {
+            recipients = select(request.getSegment());
+            json = encode(request.getPayload(), MimeTypeUtils.APPLICATION_JSON);
+            cbor = recipients.stream().anyMatch(t -> codecNegotiator.isBinary(t.sessionId()))
+                    ? encode(request.getPayload(), MimeTypeUtils.APPLICATION_OCTET_STREAM)
+                    : null;
+        } catch (Exception e) {
+            logger.error("Broadcast {} could not start on this node: {}", broadcast.id, e.getMessage(), e);
+            progress.finish(BroadcastStatus.State.FAILED);
+            broadcast.local = progress;
+            report(broadcast, progress);
+            return;
+        }
+
+        progress.targeted = recipients.size();
+        broadcast.local = progress;
+        report(broadcast, progress);
+        logger.info("Broadcast {} started for {} sessions on this node", broadcast.id, recipients.size());
+        deliver(broadcast, progress, recipients, json, cbor);
+        report(broadcast, progress);
+    }
+
+    private void deliver(ClusterBroadcast broadcast, Progress progress, List<Target> recipients, byte[] json, byte[] cbor) {
+        try {
+            long lastReport = System.nanoTime();
+            for (int from = 0; from < recipients.size(); from += waveSize) {
+                waitForOutboundCapacity();
+                for (Target target : recipients.subList(from, Math.min(from + waveSize, recipients.size()))) {
+                    if (send(target, json, cbor)) {
+                        progress.dispatched.incrementAndGet();
+                        framesDispatched.increment();
+                    } else {
+                        progress.failed.incrementAndGet();
+                    }
+                }
+                progress.waves.incrementAndGet();
+                if (System.nanoTime() - lastReport >= REPORT_INTERVAL_NANOS) {
+                    report(broadcast, progress);
+                    lastReport = System.nanoTime();
+                }
+                TimeUnit.MILLISECONDS.sleep(waveIntervalMs);
+            }
+            progress.finish(BroadcastStatus.State.COMPLETED);
+            logger.info("Broadcast {} finished on this node: {} dispatched, {} failed",
+                    progress.id, progress.dispatched.get(), progress.failed.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.finish(BroadcastStatus.State.FAILED);
+        } catch (Exception e) {
+            logger.error("Broadcast {} failed: {}", progress.id, e.getMessage(), e);
+            progress.finish(BroadcastStatus.State.FAILED);
+        }
+    }
+
+    private void report(ClusterBroadcast broadcast, Progress progress) {
+        try {
+            clusterEventBus.publish(PROGRESS_EVENT,
+                    write(new ProgressReport(broadcast.id, broadcast.startedAt, progress.snapshot(nodeId))));
+        } catch (Exception e) {
+            // Only the other nodes' view goes stale; this node reads its own progress directly
+            logger.warn("Failed to report progress of broadcast {}: {}", broadcast.id, e.getMessage());
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new InvalidOperationException("Broadcast cannot be serialized: " + e.getOriginalMessage());
+        }
+    }
+
+    private <T> T read(String event, Class<T> type) {
+        try {
+            return objectMapper.readValue(event, type);
+        } catch (JsonProcessingException e) {
+            logger.error("Dropped malformed {} event: {}", type.getSimpleName(), e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    private boolean send(Target target, byte[] json, byte[] cbor) {
+        if (!targets.containsKey(target.sessionId())) {
+            return false; // disconnected since the broadcast started
+        }
+        boolean binary = cbor != null && codecNegotiator.isBinary(target.sessionId());
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(target.sessionId());
+        accessor.setSubscriptionId(target.subscriptionId());
+        accessor.setDestination(ANNOUNCEMENT_DESTINATION);
+        if (binary) {
+            accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+            accessor.setNativeHeader(CborMessageConverter.CODEC_HEADER, CborMessageConverter.CODEC_CBOR);
+        } else {
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        }
+        try {
+            return clientOutboundChannel.send(MessageBuilder.createMessage(binary ? cbor : json, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            logger.debug("Broadcast frame to session {} failed: {}", target.sessionId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void waitForOutboundCapacity() throws InterruptedException {
+        if (!(clientOutboundChannel instanceof ExecutorSubscribableChannel channel)
+                || !(channel.getExecutor() instanceof ThreadPoolTaskExecutor executor)) {
+            return;
+        }
+        while (executor.getThreadPoolExecutor().getQueue().size() > maxOutboundBacklog) {
+            TimeUnit.MILLISECONDS.sleep(waveIntervalMs);
+        }
+    }
+
+    private byte[] encode(Object payload, MimeType contentType) {
+        Message<?> message = messageConverter.toMessage(payload,
+                new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, contentType)));
+        if (message == null || !(message.getPayload() instanceof byte[] bytes)) {
+            throw new InvalidOperationException("Broadcast payload cannot be serialized as " + contentType);
+        }
+        return bytes;
+    }
+
+    private List<Target> select(BroadcastSegment segment) {
+        List<Target> all = new ArrayList<>(targets.values());
+        if (segment == null) {
+            return all;
+        }
+
+        List<Target> selected = all.stream()
+                .filter(t -> isEmpty(segment.getUsernames()) || segment.getUsernames().contains(t.username()))
+                .filter(t -> isEmpty(segment.getTransports())
+                        || segment.getTransports().stream().anyMatch(t.transport()::startsWith))
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        if (!isEmpty(segment.getUserIds())) {
+            Set<String> userIds = new HashSet<>(segment.getUserIds());
+            selected.removeIf(t -> !userIds.contains(userService.findIdByUsername(t.username())));
+        }
+        if (!isEmpty(segment.getRoles()) && !selected.isEmpty()) {
+            Set<String> usernames = selected.stream().map(Target::username).collect(Collectors.toSet());
+            Query query = Query.query(Criteria.where("username").in(usernames).and("role").in(segment.getRoles()));
+            query.fields().include("username");
+            Set<String> inRole = mongoTemplate.find(query, User.class).stream()
+                    .map(User::getUsername)
+                    .collect(Collectors.toSet());
+            selected.removeIf(t -> !inRole.contains(t.username()));
+        }
+        return selected;
+    }
+
+    private static boolean isEmpty(List<?> values) {
+        return values == null || values.isEmpty();
+    }
+
+    private record Target(String sessionId, String subscriptionId, String username, String transport) {}
+
+    record BroadcastCommand(String id, LocalDateTime startedAt, BroadcastRequest request) {}
+
+    record ProgressReport(String broadcastId, LocalDateTime startedAt, BroadcastNodeStatus node) {}
+
+    // One node's delivery
+    private static final class Progress {
+        private final String id;
+        private volatile int targeted;
+        private final AtomicInteger dispatched = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger waves = new AtomicInteger();
+        private volatile BroadcastStatus.State state = BroadcastStatus.State.RUNNING;
+        private volatile LocalDateTime completedAt;
+
+        Progress(String id) {
+            this.id = id;
+        }
+
+        void finish(BroadcastStatus.State finalState) {
+            completedAt = LocalDateTime.now();
+            state = finalState;
+        }
+
+        BroadcastNodeStatus snapshot(String nodeId) {
+            return BroadcastNodeStatus.builder()
+                    .nodeId(nodeId)
+                    .state(state)
+                    .targetedSessions(targeted)
+                    .dispatched(dispatched.get())
+                    .failed(failed.get())
+                    .wavesCompleted(waves.get())
+                    .completedAt(completedAt)
+                    .build();
+        }
+    }
+
+    // What this node knows of a broadcast: its own progress live, the others' as last reported
+    private final class ClusterBroadcast {
+        private final String id;
+        private final LocalDateTime startedAt;
+        private final ConcurrentMap<String, BroadcastNodeStatus> nodes = new ConcurrentHashMap<>();
+        private volatile Progress local;
+
+        ClusterBroadcast(String id, LocalDateTime startedAt) {
+            this.id = id;
+            this.startedAt = startedAt;
+        }
+
+        void record(BroadcastNodeStatus node) {
+            // A late progress report never takes a finished node back to RUNNING
+            nodes.merge(node.getNodeId(), node, (current, next) ->
+                    current.getState() != BroadcastStatus.State.RUNNING ? current : next);
+        }
+
+        BroadcastStatus snapshot() {
+            Map<String, BroadcastNodeStatus> view = new TreeMap<>(nodes);
+            Progress progress = local;
+            if (progress != null) {
+                view.put(nodeId, progress.snapshot(nodeId));
+            }
+            List<BroadcastNodeStatus> all = List.copyOf(view.values());
+
+            BroadcastStatus.State state = all.isEmpty() ? BroadcastStatus.State.RUNNING : BroadcastStatus.State.COMPLETED;
+            LocalDateTime completedAt = null;
+            for (BroadcastNodeStatus node : all) {
+                if (node.getState() == BroadcastStatus.State.RUNNING) {
+                    state = BroadcastStatus.State.RUNNING;
+                } else if (node.getState() == BroadcastStatus.State.FAILED && state != BroadcastStatus.State.RUNNING) {
+                    state = BroadcastStatus.State.FAILED;
+                }
+                if (node.getCompletedAt() != null && (completedAt == null || node.getCompletedAt().isAfter(completedAt))) {
+                    completedAt = node.getCompletedAt();
+                }
+            }
+            return BroadcastStatus.builder()
+                    .id(id)
+                    .state(state)
+                    .targetedSessions(all.stream().mapToInt(BroadcastNodeStatus::getTargetedSessions).sum())
+                    .dispatched(all.stream().mapToInt(BroadcastNodeStatus::getDispatched).sum())
+                    .failed(all.stream().mapToInt(BroadcastNodeStatus::getFailed).sum())
+                    .wavesCompleted(all.stream().mapToInt(BroadcastNodeStatus::getWavesCompleted).max().orElse(0))
+                    .startedAt(startedAt)
+                    .completedAt(state == BroadcastStatus.State.RUNNING ? null : completedAt)
+                    .nodes(all)
+                    .build();
+        }
+    }
+}
@@ -2,9 +2,11 @@ package com.realtime.myfriend.service;
 
 
 import com.realtime.myfriend.entity.CallHistory;
+import com.realtime.myfriend.entity.User;
 import com.realtime.myfriend.exception.UserNotFoundException;
 import com.realtime.myfriend.repository.CallHistoryRepository;
 import com.realtime.myfriend.repository.UserRepository;
+import com.realtime.myfriend.util.ConversationIds;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +39,7 @@ public class CallService {
             CallHistory call = CallHistory.builder()
                     .callerId(callerId)
                     .receiverId(receiverId)
+                    .conversationId(ConversationIds.of(callerId, receiverId))
                     .callType(callType)
                     .startTime(LocalDateTime.now())
                     .status(CallHistory.CallStatus.MISSED) // Default status
@@ -44,13 +47,14 @@ public class CallService {
             
             CallHistory savedCall = callHistoryRepository.save(call);
             
-            // Notify receiver if online
-            if (presenceService.isUserOnline(receiverId)) {
-                messagingTemplate.convertAndSendToUser(
-                        receiverId,
-                        "/queue/call",
-                        savedCall
-                );
+            // Notify receiver if they may be connected; user destinations resolve by username
+            if (presenceService.mayBeConnected(receiverId)) {
+                userRepository.findById(receiverId).map(User::getUsername).ifPresent(receiverUsername ->
+                        messagingTemplate.convertAndSendToUser(
+                                receiverUsername,
+                                "/queue/call",
+                                savedCall
+                        ));
             }
             
             return savedCall;
@@ -79,7 +83,7 @@ public class CallService {
 
     public CompletableFuture<List<CallHistory>> getCallHistoryBetweenUsers(String user1Id, String user2Id) {
         return CompletableFuture.supplyAsync(() -> 
-            callHistoryRepository.findCallHistoryBetweenUsers(user1Id, user2Id)
+            callHistoryRepository.findCallHistoryBetweenUsers(ConversationIds.of(user1Id, user2Id))
         );
     }
 }
\ No newline at end of file
@@ -1,25 +1,42 @@
 package com.realtime.myfriend.service;
 
+import com.realtime.myfriend.dtos.ConversationPage;
+import com.realtime.myfriend.dtos.ResumeResponse;
 import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.entity.ConversationSummary;
 import com.realtime.myfriend.entity.User;
+import com.realtime.myfriend.exception.InvalidOperationException;
 import com.realtime.myfriend.exception.UserNotFoundException;
-import com.realtime.myfriend.repository.ChatMessageRepository;
+import com.realtime.myfriend.helper.PayloadCodecNegotiator;
+import com.realtime.myfriend.repository.MessageStore;
 import com.realtime.myfriend.repository.UserRepository;
 import com.realtime.myfriend.service.PresenceService;
+import com.realtime.myfriend.util.ConversationIds;
+import com.realtime.myfriend.util.MessageCursor;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -27,11 +44,31 @@ import java.util.concurrent.CompletableFuture;
 public class ChatService {
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
 
-    private final ChatMessageRepository chatMessageRepository;
+    private final MessageStore messageStore;
     private final UserRepository userRepository;
     private final SimpMessagingTemplate messagingTemplate;
     private final PresenceService presenceService;
     private final MongoTemplate mongoTemplate;
+    private final MessageWriteBatcher messageWriteBatcher;
+    private final PayloadCodecNegotiator codecNegotiator;
+    private final ConversationSummaryService summaryService;
+    private final ConversationTailCache tailCache;
+    private final MessageArchive messageArchive;
+
+    @Value("${app.chat.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.chat.max-page-size:200}")
+    private int maxPageSize;
+
+    @Value("${app.chat.resume.max-conversations:500}")
+    private int maxResumeConversations;
+
+    @Value("${app.chat.resume.lag-window:32}")
+    private long resumeLagWindow;
+
+    @Value("${app.chat.resume.settle-time:PT30S}")
+    private Duration resumeSettleTime;
 
     // ✅ Async with @Async - maintains security context
     @Async
@@ -47,31 +84,192 @@ public class ChatService {
         ChatMessage message = ChatMessage.builder()
                 .senderId(senderId)
                 .receiverId(receiverId)
+                .conversationId(ConversationIds.of(senderId, receiverId))
                 .content(content)
                 .timestamp(LocalDateTime.now())
                 .read(false)
                 .build();
+        ChatMessage savedMessage = messageStore.append(message);
+        summaryService.recordMessage(savedMessage);
+        tailCache.append(List.of(savedMessage));
 
-        ChatMessage savedMessage = chatMessageRepository.save(message);
-
-        // ✅ Send via WebSocket if user is online
-        if (presenceService.isUserOnline(receiverId)) {
+        // ✅ Send via WebSocket if user may be connected, on this node or (relay) any other
+        if (presenceService.mayBeConnected(receiverId)) {
             String receiverUsername = userRepository.findById(receiverId)
                     .map(User::getUsername)
                     .orElseThrow(() -> new UserNotFoundException("Receiver not found"));
             messagingTemplate.convertAndSendToUser(
-                    receiverUsername, "/queue/messages", savedMessage
+                    receiverUsername, "/queue/messages", savedMessage, codecNegotiator.headersForUser(receiverUsername)
             );
         }
 
         return CompletableFuture.completedFuture(savedMessage);
     }
 
-    // ✅ Async with @Async
+    // ✅ Async with @Async - keyset pagination over (timestamp, _id)
     @Async
-    public CompletableFuture<List<ChatMessage>> getConversation(String user1Id, String user2Id) {
-        List<ChatMessage> messages = chatMessageRepository.findConversation(user1Id, user2Id);
-        return CompletableFuture.completedFuture(messages);
+    public CompletableFuture<ConversationPage> getConversation(String user1Id, String user2Id, String cursor,
+                                                               ConversationPage.Direction direction, Integer limit) {
+        return CompletableFuture.completedFuture(loadPage(ConversationIds.of(user1Id, user2Id), cursor, direction, limit));
+    }
+
+    /**
+     * One page of any conversation, one-to-one or group; callers check access.
+     */
+    public ConversationPage loadPage(String conversationId, String cursor, ConversationPage.Direction direction,
+                                     Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        boolean older = direction != ConversationPage.Direction.NEWER;
+
+        boolean firstPage = older && (cursor == null || cursor.isBlank());
+        if (firstPage) {
+            ConversationTailCache.Page cached = tailCache.firstPage(conversationId, pageSize);
+            if (cached != null) {
+                return toPage(cached.messages(), cached.hasMore());
+            }
+        }
+        long stamp = firstPage ? tailCache.stamp(conversationId) : 0;
+        // A first-page miss reads a whole tail so the cache can be seeded from it
+        int fetch = firstPage ? Math.max(pageSize, tailCache.capacity()) : pageSize;
+
+        MessageCursor position = cursor != null && !cursor.isBlank() ? MessageCursor.decode(cursor) : null;
+        List<ChatMessage> messages;
+        if (older) {
+            messages = messageStore.page(conversationId, position, true, fetch + 1);
+            // Hot window exhausted: the rest of the history is in the archive
+            if (messages.size() <= fetch && messageArchive.isEnabled()) {
+                MessageCursor boundary = messages.isEmpty() ? position : cursorOf(messages.get(messages.size() - 1));
+                messages = new ArrayList<>(messages);
+                messages.addAll(messageArchive.readOlder(conversationId, boundary, fetch + 1 - messages.size()));
+            }
+        } else {
+            // Archived messages precede every hot one
+            messages = new ArrayList<>(messageArchive.readNewer(conversationId, position, fetch + 1));
+            if (messages.size() <= fetch) {
+                MessageCursor from = messages.isEmpty() ? position : cursorOf(messages.get(messages.size() - 1));
+                messages.addAll(messageStore.page(conversationId, from, false, fetch + 1 - messages.size()));
+            }
+        }
+
+        boolean hasMore = messages.size() > fetch;
+        if (hasMore) {
+            messages = messages.subList(0, fetch);
+        }
+        if (older) {
+            Collections.reverse(messages);
+        }
+        if (firstPage) {
+            tailCache.seed(conversationId, messages, hasMore, stamp);
+            if (messages.size() > pageSize) {
+                messages = messages.subList(messages.size() - pageSize, messages.size());
+                hasMore = true;
+            }
+        }
+
+        return toPage(messages, hasMore);
+    }
+
+    /**
+     * Messages the user missed while disconnected: for each partner, whatever is past
+     * the last sequence the client saw, capped at the max page size per conversation.
+     * Sequences are reserved before the insert, so a lower one can commit after a higher
+     * one the client already has. Conversations active within {@code settle-time} are
+     * therefore re-read from {@code lag-window} below the client's sequence, and the
+     * response may repeat messages the client has; it should drop them by id. The rest
+     * are only read when their counter moved past the client's sequence.
+     */
+    @Async
+    public CompletableFuture<ResumeResponse> resume(String userId, Map<String, Long> lastSequences) {
+        if (lastSequences == null || lastSequences.isEmpty()) {
+            return CompletableFuture.completedFuture(new ResumeResponse(Map.of(), Set.of()));
+        }
+        if (lastSequences.size() > maxResumeConversations) {
+            throw new InvalidOperationException("Cannot resume more than " + maxResumeConversations + " conversations at once");
+        }
+
+        Map<String, String> partnerByConversation = new LinkedHashMap<>();
+        lastSequences.keySet().forEach(partnerId -> partnerByConversation.put(ConversationIds.of(userId, partnerId), partnerId));
+        // Two queries decide which of up to max-conversations partners need a read at all
+        Map<String, Long> current = messageStore.currentSequences(partnerByConversation.keySet());
+        Set<String> unsettled = recentlyActive(partnerByConversation.keySet());
+
+        Map<String, List<ChatMessage>> missed = new LinkedHashMap<>();
+        Set<String> hasMore = new HashSet<>();
+        partnerByConversation.forEach((conversationId, partnerId) -> {
+            Long lastSequence = lastSequences.get(partnerId);
+            long seen = lastSequence == null ? 0L : lastSequence;
+            boolean settled = !unsettled.contains(conversationId);
+            if (settled && current.getOrDefault(conversationId, 0L) <= seen) {
+                return;
+            }
+
+            long from = settled ? seen : Math.max(0L, seen - resumeLagWindow);
+            List<ChatMessage> messages = messageStore.afterSequence(conversationId, from, maxPageSize + 1);
+            if (messages.size() > maxPageSize) {
+                messages = messages.subList(0, maxPageSize);
+                hasMore.add(partnerId);
+            }
+            if (!messages.isEmpty()) {
+                missed.put(partnerId, messages);
+            }
+        });
+
+        return CompletableFuture.completedFuture(new ResumeResponse(missed, hasMore));
+    }
+
+    // Conversations whose last message is recent enough that a lower sequence may still commit
+    private Set<String> recentlyActive(Collection<String> conversationIds) {
+        Query query = new Query(Criteria.where("id").in(conversationIds)
+                .and("lastMessageAt").gt(LocalDateTime.now().minus(resumeSettleTime)));
+        query.fields().include("id");
+
+        Set<String> active = new HashSet<>();
+        for (ConversationSummary summary : mongoTemplate.find(query, ConversationSummary.class)) {
+            active.add(summary.getId());
+        }
+        return active;
+    }
+
+    private static MessageCursor cursorOf(ChatMessage message) {
+        return MessageCursor.of(message.getTimestamp(), message.getId());
+    }
+
+    private ConversationPage toPage(List<ChatMessage> messages, boolean hasMore) {
+        ConversationPage.ConversationPageBuilder page = ConversationPage.builder()
+                .messages(messages)
+                .hasMore(hasMore);
+        if (!messages.isEmpty()) {
+            ChatMessage oldest = messages.get(0);
+            ChatMessage newest = messages.get(messages.size() - 1);
+            page.olderCursor(MessageCursor.of(oldest.getTimestamp(), oldest.getId()).encode());
+            page.newerCursor(MessageCursor.of(newest.getTimestamp(), newest.getId()).encode());
+        }
+        return page.build();
+    }
+
+    /**
+     * Users this user exchanged messages with most recently, newest first. Read from
+     * conversation_summaries, one document per conversation on the
+     * participants_last_message index, so the cost is {@code limit} documents.
+     */
+    public Set<String> getRecentContactIds(String userId, int limit) {
+        Query query = new Query(Criteria.where("participants").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "lastMessageAt").and(Sort.by(Sort.Direction.DESC, "id")))
+                .limit(limit);
+        query.fields().include("participants");
+
+        Set<String> contacts = new LinkedHashSet<>();
+        for (ConversationSummary summary : mongoTemplate.find(query, ConversationSummary.class)) {
+            if (summary.getParticipants() == null) {
+                continue;
+            }
+            for (String participantId : summary.getParticipants()) {
+                if (participantId != null && !userId.equals(participantId)) {
+                    contacts.add(participantId);
+                }
+            }
+        }
+        return contacts;
     }
 
     // ✅ Async with @Async
@@ -85,12 +283,43 @@ public class ChatService {
         ChatMessage message = ChatMessage.builder()
                 .senderId(senderId)
                 .receiverId(receiverId)
+                .conversationId(ConversationIds.of(senderId, receiverId))
+                .content(content)
+                .timestamp(LocalDateTime.now())
+                .read(false)
+                .build();
+
+        // The batcher numbers its messages per flush
+        if (messageWriteBatcher.isEnabled()) {
+            return messageWriteBatcher.submit(message);
+        }
+
+        ChatMessage savedMessage = messageStore.append(message);
+        summaryService.recordMessage(savedMessage);
+        tailCache.append(List.of(savedMessage));
+        return CompletableFuture.completedFuture(savedMessage);
+    }
+
+    /**
+     * Stores one group message; it is delivered once to the group topic and every
+     * member reads it from there, so there is no per-recipient copy or receiverId.
+     */
+    @Async
+    public CompletableFuture<ChatMessage> saveGroupMessage(String senderId, String groupId, String content) {
+        ChatMessage message = ChatMessage.builder()
+                .senderId(senderId)
+                .conversationId(ConversationIds.forGroup(groupId))
                 .content(content)
                 .timestamp(LocalDateTime.now())
                 .read(false)
                 .build();
 
-        ChatMessage savedMessage = chatMessageRepository.save(message);
+        if (messageWriteBatcher.isEnabled()) {
+            return messageWriteBatcher.submit(message);
+        }
+
+        ChatMessage savedMessage = messageStore.append(message);
+        tailCache.append(List.of(savedMessage));
         return CompletableFuture.completedFuture(savedMessage);
     }
 
@@ -98,19 +327,19 @@ public class ChatService {
     @Async
     @Transactional
     public CompletableFuture<Void> markMessagesAsRead(String senderId, String receiverId, List<String> messageIds) {
-        Query query = new Query();
-
-        if (messageIds != null && !messageIds.isEmpty()) {
-            query.addCriteria(Criteria.where("_id").in(messageIds));
-        } else {
-            query.addCriteria(Criteria.where("senderId").is(senderId)
-                    .and("receiverId").is(receiverId)
-                    .and("read").is(false));
+        boolean all = messageIds == null || messageIds.isEmpty();
+        String conversationId = ConversationIds.of(senderId, receiverId);
+        long marked = all
+                ? messageStore.markReadUpTo(conversationId, receiverId, Long.MAX_VALUE)
+                // Only unread ones, so the count is what the unread counter drops by
+                : messageStore.markRead(conversationId, receiverId, messageIds);
+        summaryService.recordRead(conversationId, receiverId, marked, all);
+        if (all) {
+            tailCache.markRead(conversationId, receiverId, Long.MAX_VALUE);
+        } else if (marked > 0) {
+            tailCache.invalidate(conversationId);
         }
 
-        Update update = new Update().set("read", true);
-        mongoTemplate.updateMulti(query, update, ChatMessage.class);
-
         if (messageIds != null && !messageIds.isEmpty()) {
             logger.info("Marked {} specific messages as read from {} → {}", messageIds.size(), senderId, receiverId);
         } else {
@@ -122,14 +351,12 @@ public class ChatService {
 
     // Keep synchronous for simple operations
     public void updateManyAsRead(String senderId, String receiverId, List<String> messageIds) {
-        Query query = new Query()
-                .addCriteria(Criteria.where("_id").in(messageIds)
-                        .and("senderId").is(senderId)
-                        .and("receiverId").is(receiverId)
-                        .and("read").is(false));
-
-        Update update = new Update().set("read", true);
-        mongoTemplate.updateMulti(query, update, ChatMessage.class);
+        String conversationId = ConversationIds.of(senderId, receiverId);
+        long marked = messageStore.markRead(conversationId, receiverId, messageIds);
+        summaryService.recordRead(conversationId, receiverId, marked, false);
+        if (marked > 0) {
+            tailCache.invalidate(conversationId);
+        }
 
         logger.info("Marked {} messages as read from {} → {}", messageIds.size(), senderId, receiverId);
     }
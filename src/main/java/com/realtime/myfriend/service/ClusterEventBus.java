@@ -0,0 +1,94 @@
+package com.realtime.myfriend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Node-to-node notifications. In relay mode every event goes to {@link #DESTINATION}
+ * on the broker and each node receives it on the relay's system connection, this one
+ * included; with the simple broker there is a single node and events are dispatched
+ * in place. Listeners run on the relay's I/O thread and must hand off anything slow.
+ */
+@Component
+public class ClusterEventBus implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterEventBus.class);
+
+    // Clients may neither subscribe nor send here, see GroupSubscriptionInterceptor
+    public static final String DESTINATION_PREFIX = "/topic/cluster.";
+    public static final String DESTINATION = DESTINATION_PREFIX + "events";
+    private static final String TYPE_HEADER = "cluster-event";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectProvider<StompBrokerRelayMessageHandler> relayHandler;
+    private final boolean relay;
+
+    private final ConcurrentMap<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    public ClusterEventBus(SimpMessagingTemplate messagingTemplate,
+                           ObjectProvider<StompBrokerRelayMessageHandler> relayHandler,
+                           @Value("${app.websocket.broker.mode:simple}") String brokerMode) {
+        this.messagingTemplate = messagingTemplate;
+        this.relayHandler = relayHandler;
+        this.relay = "relay".equalsIgnoreCase(brokerMode);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Subscribed on the system connection when the relay starts, and again on every reconnect
+        relayHandler.ifAvailable(handler -> handler.getSystemSubscriptions().put(DESTINATION, this::receive));
+    }
+
+    public boolean isRelay() {
+        return relay;
+    }
+
+    public void on(String type, Consumer<String> listener) {
+        listeners.computeIfAbsent(type, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Delivers the event to the listeners of {@code type} on every node.
+     */
+    public void publish(String type, String payload) {
+        if (!relay) {
+            dispatch(type, payload);
+            return;
+        }
+        messagingTemplate.convertAndSend(DESTINATION, payload, Map.of(TYPE_HEADER, type));
+    }
+
+    private void receive(Message<?> message) {
+        String type = StompHeaderAccessor.wrap(message).getFirstNativeHeader(TYPE_HEADER);
+        Object payload = message.getPayload();
+        if (type == null) {
+            return;
+        }
+        dispatch(type, payload instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : payload.toString());
+    }
+
+    private void dispatch(String type, String payload) {
+        for (Consumer<String> listener : listeners.getOrDefault(type, List.of())) {
+            try {
+                listener.accept(payload);
+            } catch (Exception e) {
+                logger.error("Cluster event {} listener failed: {}", type, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.CallHistory;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.util.ConversationIds;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Fills in {@code conversationId} on documents written before the field existed.
+ * Walks each collection in {@code _id} order so every batch is an index range scan,
+ * and is safe to re-run: already migrated documents are skipped by the filter.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationIdBackfillService {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationIdBackfillService.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.migration.conversation-id.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.migration.conversation-id.batch-size:500}")
+    private int batchSize;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long messages = backfill(ChatMessage.class, "senderId", "receiverId");
+            long calls = backfill(CallHistory.class, "callerId", "receiverId");
+            logger.info("conversationId backfill finished: {} messages, {} calls updated", messages, calls);
+        } catch (Exception e) {
+            logger.error("conversationId backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private long backfill(Class<?> entityClass, String firstUserField, String secondUserField) {
+        String collection = mongoTemplate.getCollectionName(entityClass);
+        ObjectId lastId = null;
+        long updated = 0;
+
+        while (true) {
+            Criteria criteria = Criteria.where("conversationId").exists(false);
+            if (lastId != null) {
+                criteria = criteria.and("_id").gt(lastId);
+            }
+            Query query = new Query(criteria)
+                    .with(Sort.by(Sort.Direction.ASC, "_id"))
+                    .limit(batchSize);
+            query.fields().include("_id", firstUserField, secondUserField);
+
+            List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+            if (batch.isEmpty()) {
+                return updated;
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+            int pending = 0;
+            for (Document doc : batch) {
+                String first = doc.getString(firstUserField);
+                String second = doc.getString(secondUserField);
+                if (first != null && second != null) {
+                    bulk.updateOne(Query.query(Criteria.where("_id").is(doc.get("_id"))),
+                            Update.update("conversationId", ConversationIds.of(first, second)));
+                    pending++;
+                }
+            }
+            if (pending > 0) {
+                updated += bulk.execute().getModifiedCount();
+            }
+            lastId = batch.get(batch.size() - 1).getObjectId("_id");
+            logger.debug("conversationId backfill on {}: {} updated so far", collection, updated);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.ConversationSequence;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Hands out per-conversation message sequence numbers from one counter document
+ * per conversation, advanced with an atomic {@code $inc}. Numbers start at 1 and
+ * never repeat, but they are taken before the message is inserted: a failed insert
+ * leaves a permanent gap, and of two concurrent sends N+1 can become visible before N.
+ * A gap alone therefore does not say whether a message is missing or still to come;
+ * {@code /chat/resume} re-reads recent conversations below the client's sequence for that.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationSequenceService {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Last number handed out for the conversation, 0 if none yet.
+     */
+    public long current(String conversationId) {
+        ConversationSequence sequence = mongoTemplate.findById(conversationId, ConversationSequence.class);
+        return sequence == null ? 0 : sequence.getValue();
+    }
+
+    /**
+     * {@link #current} for several conversations in one query; absent ones are left out.
+     */
+    public Map<String, Long> currentAll(Collection<String> conversationIds) {
+        return mongoTemplate.find(Query.query(Criteria.where("id").in(conversationIds)), ConversationSequence.class)
+                .stream()
+                .collect(Collectors.toMap(ConversationSequence::getId, ConversationSequence::getValue));
+    }
+
+    public long next(String conversationId) {
+        return reserve(conversationId, 1);
+    }
+
+    /**
+     * Reserves {@code count} consecutive numbers and returns the first of them.
+     */
+    public long reserve(String conversationId, int count) {
+        ConversationSequence sequence = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(conversationId)),
+                new Update().inc("value", count),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                ConversationSequence.class
+        );
+        return sequence.getValue() - count + 1;
+    }
+}
@@ -0,0 +1,203 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.dtos.InboxEntry;
+import com.realtime.myfriend.dtos.InboxPage;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.entity.ConversationSummary;
+import com.realtime.myfriend.util.ConversationIds;
+import com.realtime.myfriend.util.MessageCursor;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Maintains {@code conversation_summaries}: last message preview and per-participant
+ * unread counters, updated incrementally by the send and read paths so the inbox
+ * never has to touch {@code chat_messages}.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationSummaryService {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSummaryService.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.chat.inbox.page-size:30}")
+    private int defaultPageSize;
+
+    @Value("${app.chat.inbox.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${app.chat.inbox.preview-length:120}")
+    private int previewLength;
+
+    public void recordMessage(ChatMessage message) {
+        recordMessages(List.of(message));
+    }
+
+    /**
+     * Folds newly stored messages into their summaries, sent as one unordered bulk. Per
+     * conversation, an upsert adds the unread increments (and the latest message when it
+     * creates the summary), and a separate update moves the latest message forward only
+     * if its sequence is higher, so a late flush never takes the summary back.
+     */
+    public void recordMessages(List<ChatMessage> messages) {
+        Map<String, List<ChatMessage>> byConversation = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            // Groups keep read state on the membership watermark instead
+            if (!ConversationIds.isGroup(message.getConversationId())) {
+                byConversation.computeIfAbsent(message.getConversationId(), k -> new ArrayList<>()).add(message);
+            }
+        }
+        if (byConversation.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConversationSummary.class);
+        byConversation.forEach((conversationId, conversation) -> {
+            ChatMessage last = conversation.get(conversation.size() - 1);
+            Update upsert = new Update()
+                    .setOnInsert("participants", List.of(last.getSenderId(), last.getReceiverId()))
+                    .setOnInsert("lastMessageId", last.getId())
+                    .setOnInsert("lastSenderId", last.getSenderId())
+                    .setOnInsert("lastMessagePreview", preview(last.getContent()))
+                    .setOnInsert("lastMessageAt", last.getTimestamp())
+                    .setOnInsert("lastSequence", last.getSequence());
+
+            Map<String, Long> unreadIncrements = new LinkedHashMap<>();
+            for (ChatMessage message : conversation) {
+                unreadIncrements.merge(message.getReceiverId(), 1L, Long::sum);
+            }
+            unreadIncrements.forEach((receiverId, count) -> upsert.inc("unread." + receiverId, count));
+            bulk.upsert(Query.query(Criteria.where("id").is(conversationId)), upsert);
+
+            // Matches nothing if it runs before the upsert created the summary, which then carries it
+            Query older = Query.query(new Criteria().andOperator(
+                    Criteria.where("id").is(conversationId),
+                    new Criteria().orOperator(
+                            Criteria.where("lastSequence").lt(last.getSequence()),
+                            Criteria.where("lastSequence").exists(false))));
+            bulk.updateOne(older, new Update()
+                    .set("lastMessageId", last.getId())
+                    .set("lastSenderId", last.getSenderId())
+                    .set("lastMessagePreview", preview(last.getContent()))
+                    .set("lastMessageAt", last.getTimestamp())
+                    .set("lastSequence", last.getSequence()));
+        });
+
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            // The messages are already stored; a stale summary heals on the next send or read
+            logger.error("Failed to update {} conversation summaries: {}", byConversation.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Lowers the reader's unread counter by what a read actually flipped, or clears it
+     * when the whole conversation was marked read.
+     */
+    public void recordRead(String conversationId, String readerId, long markedRead, boolean all) {
+        if (!all && markedRead <= 0) {
+            return;
+        }
+        Update update = all
+                ? new Update().set("unread." + readerId, 0L)
+                : new Update().inc("unread." + readerId, -markedRead);
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(conversationId)), update, ConversationSummary.class);
+        } catch (Exception e) {
+            logger.error("Failed to update unread count of {} in {}: {}", readerId, conversationId, e.getMessage());
+        }
+    }
+
+    /**
+     * Raises the reader's watermark (never lowers it) and drops their unread counter by
+     * the messages the watermark flipped, in one update.
+     */
+    public void recordWatermark(String conversationId, String readerId, long upToSequence, long markedRead) {
+        Update update = new Update().max("readUpTo." + readerId, upToSequence);
+        if (markedRead > 0) {
+            update.inc("unread." + readerId, -markedRead);
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(conversationId)), update, ConversationSummary.class);
+    }
+
+    // ✅ Async with @Async - keyset pagination over (lastMessageAt, _id)
+    @Async
+    public CompletableFuture<InboxPage> getInbox(String userId, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+
+        Criteria criteria = Criteria.where("participants").is(userId);
+        if (cursor != null && !cursor.isBlank()) {
+            MessageCursor position = MessageCursor.decode(cursor);
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("lastMessageAt").lt(position.timestamp()),
+                    Criteria.where("lastMessageAt").is(position.timestamp()).and("id").lt(position.id())));
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "lastMessageAt").and(Sort.by(Sort.Direction.DESC, "id")))
+                .limit(pageSize + 1);
+
+        List<ConversationSummary> summaries = mongoTemplate.find(query, ConversationSummary.class);
+        boolean hasMore = summaries.size() > pageSize;
+        if (hasMore) {
+            summaries = summaries.subList(0, pageSize);
+        }
+
+        List<InboxEntry> entries = summaries.stream().map(summary -> toEntry(summary, userId)).toList();
+        InboxPage.InboxPageBuilder page = InboxPage.builder()
+                .conversations(entries)
+                .hasMore(hasMore);
+        if (hasMore) {
+            ConversationSummary last = summaries.get(summaries.size() - 1);
+            page.nextCursor(MessageCursor.of(last.getLastMessageAt(), last.getId()).encode());
+        }
+        return CompletableFuture.completedFuture(page.build());
+    }
+
+    private InboxEntry toEntry(ConversationSummary summary, String userId) {
+        String partnerId = summary.getParticipants() == null ? null : summary.getParticipants().stream()
+                .filter(id -> !id.equals(userId))
+                .findFirst()
+                .orElse(userId);
+        Long unread = summary.getUnread() == null ? null : summary.getUnread().get(userId);
+        Long partnerReadUpTo = summary.getReadUpTo() == null ? null : summary.getReadUpTo().get(partnerId);
+
+        return InboxEntry.builder()
+                .conversationId(summary.getId())
+                .partnerId(partnerId)
+                .lastMessageId(summary.getLastMessageId())
+                .lastSenderId(summary.getLastSenderId())
+                .lastMessagePreview(summary.getLastMessagePreview())
+                .lastMessageAt(summary.getLastMessageAt())
+                .lastSequence(summary.getLastSequence())
+                .unreadCount(unread == null ? 0 : Math.max(0, unread))
+                .partnerReadUpTo(partnerReadUpTo)
+                .build();
+    }
+
+    private String preview(String content) {
+        if (content == null || content.length() <= previewLength) {
+            return content;
+        }
+        int end = Character.isHighSurrogate(content.charAt(previewLength - 1)) ? previewLength - 1 : previewLength;
+        return content.substring(0, end);
+    }
+}
@@ -0,0 +1,287 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the last {@code messages-per-conversation} messages of recently active
+ * conversations in memory so the first page of {@code GET /chat/conversation} can be
+ * served without Mongo. Once the estimated size of all tails exceeds
+ * {@code max-bytes}, the conversations least likely to be read again are evicted.
+ *
+ * <p>A tail is seeded from a first-page read and then kept current by appends from
+ * the write path. Each seed carries the write stamp of its conversation's stripe from
+ * before the query ran; if a write landed in between, the seed is dropped rather than
+ * installed without that message.</p>
+ *
+ * <p>Tails are immutable snapshots replaced atomically per conversation, so reads take
+ * no lock and writers only contend within one conversation. Only this node's writes
+ * reach the cache: with a relay broker other nodes write too, so the cache turns
+ * itself off, and every tail is reseeded {@code ttl} after it was seeded regardless.</p>
+ */
+@Component
+public class ConversationTailCache {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationTailCache.class);
+
+    private static final int STRIPES = 1024;
+    private static final Comparator<ChatMessage> ORDER = Comparator
+            .comparing(ChatMessage::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ChatMessage::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final int capacity;
+    private final boolean enabled;
+
+    private final Cache<String, Tail> tails;
+    private final AtomicLongArray writeStamps = new AtomicLongArray(STRIPES);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ConversationTailCache(
+            @Value("${app.chat.tail-cache.enabled:true}") boolean enabled,
+            @Value("${app.chat.tail-cache.messages-per-conversation:50}") int capacity,
+            @Value("${app.chat.tail-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${app.chat.tail-cache.ttl:PT1M}") Duration ttl,
+            @Value("${app.websocket.broker.mode:simple}") String brokerMode,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled && !"relay".equalsIgnoreCase(brokerMode);
+        if (enabled && !this.enabled) {
+            logger.info("Conversation tail cache disabled: writes on other nodes would not reach it");
+        }
+        this.capacity = capacity;
+        this.hits = Counter.builder("chat.tail.cache.requests").tag("result", "hit")
+                .description("First-page conversation reads served from memory")
+                .register(meterRegistry);
+        this.misses = Counter.builder("chat.tail.cache.requests").tag("result", "miss")
+                .description("First-page conversation reads that went to Mongo")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("chat.tail.cache.evictions")
+                .description("Conversations dropped to stay within the memory budget")
+                .register(meterRegistry);
+        this.tails = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String conversationId, Tail tail) -> (int) Math.min(Integer.MAX_VALUE, tail.bytes()))
+                // Counted from the seed only: appends keep a tail current but must not keep it forever
+                .expireAfter(new Expiry<String, Tail>() {
+                    @Override
+                    public long expireAfterCreate(String key, Tail tail, long currentTime) {
+                        return ttl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Tail tail, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Tail tail, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .evictionListener((String conversationId, Tail tail, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+        Gauge.builder("chat.tail.cache.bytes", this, cache -> cache.estimatedBytes())
+                .description("Estimated size of all cached conversation tails")
+                .register(meterRegistry);
+        Gauge.builder("chat.tail.cache.conversations", this, cache -> cache.conversationCount())
+                .register(meterRegistry);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Newest {@code limit} messages, oldest first, or {@code null} on a miss.
+     * {@link Page#hasMore()} tells whether older messages exist beyond them.
+     */
+    public Page firstPage(String conversationId, int limit) {
+        if (!enabled || limit > capacity) {
+            return null;
+        }
+        Tail tail = tails.getIfPresent(conversationId);
+        if (tail == null || (tail.messages().size() < limit && tail.hasOlder())) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        List<ChatMessage> all = tail.messages();
+        int from = Math.max(0, all.size() - limit);
+        return new Page(new ArrayList<>(all.subList(from, all.size())), from > 0 || tail.hasOlder());
+    }
+
+    /**
+     * Write stamp to pass to {@link #seed} for a read that is about to start.
+     */
+    public long stamp(String conversationId) {
+        return writeStamps.get(stripe(conversationId));
+    }
+
+    /**
+     * Installs a tail read from Mongo, oldest first, unless a write to the conversation
+     * happened since {@code stamp} was taken.
+     */
+    public void seed(String conversationId, List<ChatMessage> newest, boolean hasOlder, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        // Writers bump the stamp before touching the tail, so checking it under the entry's lock is enough
+        tails.asMap().compute(conversationId, (id, existing) -> {
+            if (existing != null || writeStamps.get(stripe(conversationId)) != stamp) {
+                return existing;
+            }
+            int from = Math.max(0, newest.size() - capacity);
+            List<ChatMessage> messages = new ArrayList<>(newest.size() - from);
+            for (ChatMessage message : newest.subList(from, newest.size())) {
+                messages.add(copy(message));
+            }
+            return Tail.of(messages, hasOlder || from > 0);
+        });
+    }
+
+    /**
+     * Adds freshly stored messages to their conversations' tails, if cached.
+     */
+    public void append(Collection<ChatMessage> messages) {
+        if (!enabled) {
+            return;
+        }
+        for (ChatMessage message : messages) {
+            writeStamps.incrementAndGet(stripe(message.getConversationId()));
+            tails.asMap().computeIfPresent(message.getConversationId(),
+                    (id, tail) -> tail.insert(copy(message), capacity));
+        }
+    }
+
+    /**
+     * Mirrors a read watermark: messages to {@code readerId} up to the sequence become read.
+     */
+    public void markRead(String conversationId, String readerId, long upToSequence) {
+        if (!enabled) {
+            return;
+        }
+        tails.asMap().computeIfPresent(conversationId, (id, tail) -> tail.markRead(message -> !message.isRead()
+                && readerId.equals(message.getReceiverId())
+                && (message.getSequence() == null || message.getSequence() <= upToSequence)));
+    }
+
+    /**
+     * Drops a conversation's tail, e.g. when its messages change in ways the cache cannot replay.
+     */
+    public void invalidate(String conversationId) {
+        if (!enabled) {
+            return;
+        }
+        writeStamps.incrementAndGet(stripe(conversationId));
+        tails.invalidate(conversationId);
+    }
+
+    public long estimatedBytes() {
+        return tails.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    public long conversationCount() {
+        return tails.estimatedSize();
+    }
+
+    private static int stripe(String conversationId) {
+        return (conversationId == null ? 0 : conversationId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private static ChatMessage copy(ChatMessage message) {
+        return ChatMessage.builder()
+                .id(message.getId())
+                .senderId(message.getSenderId())
+                .receiverId(message.getReceiverId())
+                .conversationId(message.getConversationId())
+                .sequence(message.getSequence())
+                .content(message.getContent())
+                .timestamp(message.getTimestamp())
+                .read(message.isRead())
+                .build();
+    }
+
+    // Rough heap footprint: object headers, ids, timestamp and UTF-16 content
+    private static long sizeOf(ChatMessage message) {
+        int content = message.getContent() == null ? 0 : message.getContent().length();
+        return 320 + 2L * content;
+    }
+
+    public record Page(List<ChatMessage> messages, boolean hasMore) {}
+
+    /**
+     * Immutable snapshot of one conversation's newest messages, oldest first.
+     */
+    private record Tail(List<ChatMessage> messages, boolean hasOlder, long bytes) {
+
+        static Tail of(List<ChatMessage> messages, boolean hasOlder) {
+            long bytes = 0;
+            for (ChatMessage message : messages) {
+                bytes += sizeOf(message);
+            }
+            return new Tail(List.copyOf(messages), hasOlder, bytes);
+        }
+
+        // Concurrent senders can finish out of order; keep (timestamp, id) order.
+        // A seed that raced with the write may already hold the message.
+        Tail insert(ChatMessage message, int capacity) {
+            for (ChatMessage existing : messages) {
+                if (existing.getId() != null && existing.getId().equals(message.getId())) {
+                    return this;
+                }
+            }
+            List<ChatMessage> ordered = new ArrayList<>(messages.size() + 1);
+            ordered.addAll(messages);
+            int index = ordered.size();
+            while (index > 0 && ORDER.compare(ordered.get(index - 1), message) > 0) {
+                index--;
+            }
+            ordered.add(index, message);
+            boolean older = hasOlder;
+            while (ordered.size() > capacity) {
+                ordered.remove(0);
+                older = true;
+            }
+            return of(ordered, older);
+        }
+
+        Tail markRead(Predicate<ChatMessage> covered) {
+            List<ChatMessage> updated = new ArrayList<>(messages.size());
+            boolean changed = false;
+            for (ChatMessage message : messages) {
+                if (covered.test(message)) {
+                    ChatMessage read = copy(message);
+                    read.setRead(true);
+                    updated.add(read);
+                    changed = true;
+                } else {
+                    updated.add(message);
+                }
+            }
+            return changed ? new Tail(List.copyOf(updated), hasOlder, bytes) : this;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.realtime.myfriend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Member ids per group for the send and subscribe paths. Weighed by member count so
+ * a few large groups cannot crowd out everything else. A membership change drops the
+ * group here at once and on the other nodes through {@link ClusterEventBus};
+ * {@code ttl} is only a backstop for an invalidation lost with the relay connection.
+ */
+@Component
+public class GroupMemberCache {
+    private static final String INVALIDATE_EVENT = "group-members.invalidate";
+
+    private final Cache<String, Set<String>> membersByGroup;
+    private final ClusterEventBus clusterEventBus;
+
+    public GroupMemberCache(
+            @Value("${app.cache.group-members.max-weight:1000000}") long maxWeight,
+            @Value("${app.cache.group-members.ttl:PT5M}") Duration ttl,
+            MeterRegistry meterRegistry,
+            ClusterEventBus clusterEventBus
+    ) {
+        this.membersByGroup = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String groupId, Set<String> members) -> Math.max(1, members.size()))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, membersByGroup, "group.members");
+        this.clusterEventBus = clusterEventBus;
+        clusterEventBus.on(INVALIDATE_EVENT, membersByGroup::invalidate);
+    }
+
+    public Set<String> membersOf(String groupId, Function<String, Set<String>> loader) {
+        return membersByGroup.get(groupId, loader);
+    }
+
+    public void invalidate(String groupId) {
+        membersByGroup.invalidate(groupId);
+        clusterEventBus.publish(INVALIDATE_EVENT, groupId);
+    }
+}
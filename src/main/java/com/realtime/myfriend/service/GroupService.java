@@ -0,0 +1,251 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.dtos.ConversationPage;
+import com.realtime.myfriend.dtos.GroupSummary;
+import com.realtime.myfriend.entity.ChatGroup;
+import com.realtime.myfriend.entity.GroupMembership;
+import com.realtime.myfriend.exception.GroupNotFoundException;
+import com.realtime.myfriend.exception.InvalidOperationException;
+import com.realtime.myfriend.exception.UserNotFoundException;
+import com.realtime.myfriend.repository.ChatGroupRepository;
+import com.realtime.myfriend.repository.GroupMembershipRepository;
+import com.realtime.myfriend.repository.MessageStore;
+import com.realtime.myfriend.repository.UserRepository;
+import com.realtime.myfriend.util.ConversationIds;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Group chats: membership in {@code group_memberships}, one stored copy per message
+ * and per-member read state as a watermark on the membership document.
+ */
+@Service
+@RequiredArgsConstructor
+public class GroupService {
+    private static final Logger logger = LoggerFactory.getLogger(GroupService.class);
+
+    public static final String GROUP_TOPIC_PREFIX = "/topic/group.";
+
+    private final ChatGroupRepository groupRepository;
+    private final GroupMembershipRepository membershipRepository;
+    private final UserRepository userRepository;
+    private final GroupMemberCache memberCache;
+    private final MessageStore messageStore;
+    private final ChatService chatService;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.chat.groups.max-members:5000}")
+    private int maxMembers;
+
+    @Async
+    public CompletableFuture<ChatGroup> createGroup(String ownerId, String name, List<String> memberIds) {
+        if (name == null || name.isBlank()) {
+            throw new InvalidOperationException("Group name is required");
+        }
+        Set<String> members = new LinkedHashSet<>();
+        members.add(ownerId);
+        if (memberIds != null) {
+            members.addAll(memberIds);
+        }
+        if (members.size() > maxMembers) {
+            throw new InvalidOperationException("A group can have at most " + maxMembers + " members");
+        }
+        if (userRepository.countByIdIn(members) != members.size()) {
+            throw new UserNotFoundException("One or more members do not exist");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ChatGroup group = groupRepository.save(ChatGroup.builder()
+                .name(name.trim())
+                .ownerId(ownerId)
+                .memberCount(members.size())
+                .createdAt(now)
+                .build());
+
+        List<GroupMembership> memberships = new ArrayList<>(members.size());
+        for (String userId : members) {
+            memberships.add(membership(group.getId(), userId,
+                    userId.equals(ownerId) ? GroupMembership.Role.OWNER : GroupMembership.Role.MEMBER, now));
+        }
+        mongoTemplate.insert(memberships, GroupMembership.class);
+
+        logger.info("Group {} created by {} with {} members", group.getId(), ownerId, members.size());
+        return CompletableFuture.completedFuture(group);
+    }
+
+    @Async
+    public CompletableFuture<Void> addMember(String actorId, String groupId, String userId) {
+        ChatGroup group = requireGroup(groupId);
+        requireOwner(group, actorId);
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException("User not found with id: " + userId);
+        }
+
+        // Reserve the seat first so concurrent adds cannot overshoot the limit
+        boolean reserved = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(groupId).and("memberCount").lt(maxMembers)),
+                new Update().inc("memberCount", 1), ChatGroup.class).getModifiedCount() == 1;
+        if (!reserved) {
+            throw new InvalidOperationException("A group can have at most " + maxMembers + " members");
+        }
+        try {
+            membershipRepository.insert(membership(groupId, userId, GroupMembership.Role.MEMBER, LocalDateTime.now()));
+            memberCache.invalidate(groupId);
+        } catch (DuplicateKeyException e) {
+            // Already a member: give the seat back
+            changeMemberCount(groupId, -1);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Owners remove anyone but themselves; members can remove themselves (leave).
+     */
+    @Async
+    public CompletableFuture<Void> removeMember(String actorId, String groupId, String userId) {
+        ChatGroup group = requireGroup(groupId);
+        if (!actorId.equals(userId)) {
+            requireOwner(group, actorId);
+        }
+        if (group.getOwnerId().equals(userId)) {
+            throw new InvalidOperationException("The owner cannot leave the group");
+        }
+        // Only the remove that actually deleted the membership gives the seat back
+        long deleted = mongoTemplate.remove(
+                Query.query(Criteria.where("id").is(GroupMembership.idOf(groupId, userId))),
+                GroupMembership.class).getDeletedCount();
+        if (deleted == 1) {
+            // Also drops the cached members on every node; GroupSubscriptionInterceptor then
+            // stops delivering to the user's live subscription
+            changeMemberCount(groupId, -1);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * The user's groups with unread counts from their watermark, newest activity first.
+     */
+    @Async
+    public CompletableFuture<List<GroupSummary>> getGroupsForUser(String userId) {
+        Map<String, GroupMembership> memberships = membershipRepository.findByUserId(userId).stream()
+                .collect(Collectors.toMap(GroupMembership::getGroupId, Function.identity()));
+        if (memberships.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        Map<String, Long> lastSequences = messageStore.currentSequences(
+                memberships.keySet().stream().map(ConversationIds::forGroup).toList());
+
+        List<GroupSummary> summaries = new ArrayList<>();
+        for (ChatGroup group : groupRepository.findAllById(memberships.keySet())) {
+            long last = lastSequences.getOrDefault(ConversationIds.forGroup(group.getId()), 0L);
+            Long readUpTo = memberships.get(group.getId()).getReadUpTo();
+            long read = readUpTo == null ? 0 : readUpTo;
+            summaries.add(GroupSummary.builder()
+                    .groupId(group.getId())
+                    .name(group.getName())
+                    .ownerId(group.getOwnerId())
+                    .memberCount(group.getMemberCount())
+                    .lastSequence(last)
+                    .readUpTo(read)
+                    .unreadCount(Math.max(0, last - read))
+                    .build());
+        }
+        summaries.sort(Comparator.comparingLong(GroupSummary::getLastSequence).reversed());
+        return CompletableFuture.completedFuture(summaries);
+    }
+
+    @Async
+    public CompletableFuture<List<GroupMembership>> getMembers(String actorId, String groupId) {
+        requireGroup(groupId);
+        requireMember(groupId, actorId);
+        return CompletableFuture.completedFuture(membershipRepository.findByGroupId(groupId));
+    }
+
+    @Async
+    public CompletableFuture<ConversationPage> getMessages(String actorId, String groupId, String cursor,
+                                                           ConversationPage.Direction direction, Integer limit) {
+        requireMember(groupId, actorId);
+        return CompletableFuture.completedFuture(
+                chatService.loadPage(ConversationIds.forGroup(groupId), cursor, direction, limit));
+    }
+
+    public Set<String> memberIds(String groupId) {
+        return memberCache.membersOf(groupId, id -> membershipRepository.findMemberIds(id).stream()
+                .map(GroupMembership::getUserId)
+                .collect(Collectors.toUnmodifiableSet()));
+    }
+
+    public boolean isMember(String groupId, String userId) {
+        return memberIds(groupId).contains(userId);
+    }
+
+    public void requireMember(String groupId, String userId) {
+        if (!isMember(groupId, userId)) {
+            throw new AccessDeniedException("Not a member of group " + groupId);
+        }
+    }
+
+    /**
+     * Raises the member's read watermark, capped at the newest stored group message.
+     */
+    public void markRead(String groupId, String userId, long upToSequence) {
+        long upTo = Math.min(upToSequence, messageStore.lastStoredSequence(ConversationIds.forGroup(groupId)));
+        if (upTo <= 0) {
+            return;
+        }
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(GroupMembership.idOf(groupId, userId))),
+                new Update().max("readUpTo", upTo),
+                GroupMembership.class);
+    }
+
+    private ChatGroup requireGroup(String groupId) {
+        return groupRepository.findById(groupId)
+                .orElseThrow(() -> new GroupNotFoundException("Group not found with id: " + groupId));
+    }
+
+    private static void requireOwner(ChatGroup group, String actorId) {
+        if (!group.getOwnerId().equals(actorId)) {
+            throw new AccessDeniedException("Only the group owner can change its members");
+        }
+    }
+
+    private void changeMemberCount(String groupId, int delta) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(groupId)),
+                new Update().inc("memberCount", delta), ChatGroup.class);
+        memberCache.invalidate(groupId);
+    }
+
+    private static GroupMembership membership(String groupId, String userId, GroupMembership.Role role,
+                                              LocalDateTime joinedAt) {
+        return GroupMembership.builder()
+                .id(GroupMembership.idOf(groupId, userId))
+                .groupId(groupId)
+                .userId(userId)
+                .role(role)
+                .joinedAt(joinedAt)
+                .build();
+    }
+}
@@ -0,0 +1,206 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.ArchivedMessageBucket;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.util.MessageCursor;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold tier of chat history in {@code chat_messages_archive}. The tiering job always
+ * moves a conversation's oldest messages first, so its archived messages are older
+ * than every hot one and buckets never overlap; readers page through the hot
+ * collection and continue here once it runs out.
+ */
+@Service
+public class MessageArchive {
+
+    private static final Comparator<ChatMessage> POSITION = Comparator
+            .comparing(ChatMessage::getTimestamp)
+            .thenComparing(ChatMessage::getId);
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoConverter converter;
+    private final DocumentCodec codec = new DocumentCodec();
+
+    @Value("${app.chat.archive.enabled:false}")
+    private boolean enabled;
+
+    // Messages older than this are eligible for the archive
+    @Value("${app.chat.archive.max-hot-age:P90D}")
+    private Duration maxHotAge;
+
+    public MessageArchive(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.converter = mongoTemplate.getConverter();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration maxHotAge() {
+        return maxHotAge;
+    }
+
+    /**
+     * Writes one bucket of consecutive messages of a conversation, oldest first.
+     */
+    public ArchivedMessageBucket write(String conversationId, List<ChatMessage> messages) {
+        ChatMessage first = messages.get(0);
+        ChatMessage last = messages.get(messages.size() - 1);
+
+        List<Document> documents = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            Document document = new Document();
+            converter.write(message, document);
+            documents.add(document);
+        }
+        RawBsonDocument raw = new RawBsonDocument(new Document("messages", documents), codec);
+        byte[] bson = new byte[raw.getByteBuffer().remaining()];
+        raw.getByteBuffer().get(bson);
+
+        ArchivedMessageBucket bucket = ArchivedMessageBucket.builder()
+                .id(conversationId + "|" + first.getId())
+                .conversationId(conversationId)
+                .firstTimestamp(first.getTimestamp())
+                .firstMessageId(first.getId())
+                .lastTimestamp(last.getTimestamp())
+                .lastMessageId(last.getId())
+                .firstSequence(first.getSequence())
+                .lastSequence(last.getSequence())
+                .messageCount(messages.size())
+                .rawBytes(bson.length)
+                .payload(gzip(bson))
+                .archivedAt(LocalDateTime.now())
+                .build();
+        return mongoTemplate.save(bucket);
+    }
+
+    /**
+     * Up to {@code limit} archived messages before {@code before} (or the newest ones), newest first.
+     */
+    public List<ChatMessage> readOlder(String conversationId, @Nullable MessageCursor before, int limit) {
+        if (!enabled || limit <= 0) {
+            return List.of();
+        }
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        if (before != null) {
+            criteria = criteria.and("firstTimestamp").lte(before.timestamp());
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "firstTimestamp").and(Sort.by(Sort.Direction.DESC, "firstMessageId")));
+
+        List<ChatMessage> result = new ArrayList<>(limit);
+        try (var buckets = mongoTemplate.stream(query, ArchivedMessageBucket.class)) {
+            var iterator = buckets.iterator();
+            while (result.size() < limit && iterator.hasNext()) {
+                List<ChatMessage> messages = decode(iterator.next());
+                Collections.reverse(messages);
+                for (ChatMessage message : messages) {
+                    if (before == null || isBefore(message, before)) {
+                        result.add(message);
+                        if (result.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Up to {@code limit} archived messages after {@code after} (or the oldest ones), oldest first.
+     * Skips the archive entirely when the position is already inside the hot window.
+     */
+    public List<ChatMessage> readNewer(String conversationId, @Nullable MessageCursor after, int limit) {
+        if (!enabled || limit <= 0
+                || (after != null && after.timestamp().isAfter(LocalDateTime.now().minus(maxHotAge)))) {
+            return List.of();
+        }
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        if (after != null) {
+            criteria = criteria.and("lastTimestamp").gte(after.timestamp());
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "lastTimestamp").and(Sort.by(Sort.Direction.ASC, "lastMessageId")));
+
+        List<ChatMessage> result = new ArrayList<>(limit);
+        try (var buckets = mongoTemplate.stream(query, ArchivedMessageBucket.class)) {
+            var iterator = buckets.iterator();
+            while (result.size() < limit && iterator.hasNext()) {
+                for (ChatMessage message : decode(iterator.next())) {
+                    if (after == null || isBefore(after, message)) {
+                        result.add(message);
+                        if (result.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<ChatMessage> decode(ArchivedMessageBucket bucket) {
+        Document wrapper = new RawBsonDocument(gunzip(bucket.getPayload())).decode(codec);
+        List<Document> documents = wrapper.getList("messages", Document.class);
+        List<ChatMessage> messages = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            messages.add(converter.read(ChatMessage.class, document));
+        }
+        messages.sort(POSITION);
+        return messages;
+    }
+
+    private static boolean isBefore(ChatMessage message, MessageCursor position) {
+        int byTime = message.getTimestamp().compareTo(position.timestamp());
+        return byTime < 0 || (byTime == 0 && message.getId().compareTo(position.id()) < 0);
+    }
+
+    private static boolean isBefore(MessageCursor position, ChatMessage message) {
+        int byTime = position.timestamp().compareTo(message.getTimestamp());
+        return byTime < 0 || (byTime == 0 && position.id().compareTo(message.getId()) < 0);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
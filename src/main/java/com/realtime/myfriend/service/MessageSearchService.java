@@ -0,0 +1,235 @@
+package com.realtime.myfriend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.realtime.myfriend.dtos.SearchPage;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.entity.ConversationSummary;
+import com.realtime.myfriend.exception.InvalidOperationException;
+import com.realtime.myfriend.exception.SearchTimeoutException;
+import com.realtime.myfriend.util.ConversationIds;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over the requesting user's own messages, backed by the
+ * {@code conversation_content_text} index from MongoConfig. Mongo maintains that
+ * index on every insert, so new messages are searchable as soon as they are stored.
+ *
+ * <p>The index is prefixed by {@code conversationId}, so each query only touches
+ * one conversation's postings. A search without a partner runs one query per
+ * conversation and merges them; the work grows with the user's own history, never
+ * with everyone's matches. It covers at most {@code max-conversations}, most
+ * recently active first, followed by conversations from before summaries existed;
+ * a page says how many it searched and whether any were left out.</p>
+ *
+ * <p>Only {@code chat_messages} is indexed. With the archive enabled, read messages
+ * older than its {@code max-hot-age} may have moved to compressed buckets that
+ * cannot be searched; each page reports that boundary as {@code archivedBefore}.</p>
+ */
+@Service
+@RequiredArgsConstructor
+public class MessageSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchService.class);
+
+    private static final String SCORE_FIELD = "score";
+
+    private static final Comparator<ScoredMessage> BY_RECENCY = Comparator
+            .comparing((ScoredMessage match) -> match.message().getTimestamp(), Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(match -> match.message().getId(), Comparator.reverseOrder());
+
+    private static final Comparator<ScoredMessage> BY_SCORE = Comparator
+            .comparingDouble(ScoredMessage::score).reversed()
+            .thenComparing(BY_RECENCY);
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageArchive messageArchive;
+
+    // userId -> conversations without a summary
+    private final Cache<String, List<String>> unsummarizedConversations = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    @Value("${app.chat.search.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.chat.search.max-page-size:50}")
+    private int maxPageSize;
+
+    // Deepest result reachable through paging; keeps skip cost bounded
+    @Value("${app.chat.search.max-results:500}")
+    private int maxResults;
+
+    @Value("${app.chat.search.max-query-length:200}")
+    private int maxQueryLength;
+
+    @Value("${app.chat.search.timeout:PT2S}")
+    private Duration timeout;
+
+    @Value("${app.chat.search.max-conversations:50}")
+    private int maxConversations;
+
+    @Async
+    public CompletableFuture<SearchPage> search(String userId, String text, String partnerId,
+                                                SearchPage.Order order, int page, Integer limit) {
+        if (text == null || text.isBlank() || text.length() > maxQueryLength) {
+            throw new InvalidOperationException("Search text must be 1-" + maxQueryLength + " characters");
+        }
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        long offset = (long) Math.max(page, 0) * pageSize;
+        if (offset >= maxResults) {
+            throw new InvalidOperationException("Search results are limited to the first " + maxResults + " matches");
+        }
+
+        List<String> conversationIds;
+        boolean truncated = false;
+        if (partnerId != null && !partnerId.isBlank()) {
+            conversationIds = List.of(ConversationIds.of(userId, partnerId));
+        } else {
+            List<String> recent = recentConversationIds(userId);
+            List<String> unsummarized = unsummarizedConversations.get(userId, this::findUnsummarizedConversationIds);
+            Set<String> selected = new LinkedHashSet<>(recent);
+            for (String conversationId : unsummarized) {
+                if (selected.size() >= maxConversations) {
+                    break;
+                }
+                selected.add(conversationId);
+            }
+            truncated = !selected.containsAll(unsummarized)
+                    || recent.size() >= maxConversations && countSummarizedConversations(userId) > maxConversations;
+            conversationIds = List.copyOf(selected);
+        }
+
+        // Any page is made of each conversation's best matches up to the page's end
+        int window = (int) Math.min(offset + pageSize + 1, maxResults);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<ScoredMessage> matches = new ArrayList<>();
+        for (String conversationId : conversationIds) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw timedOut(userId);
+            }
+            // maxTime of 0 would mean no limit at all
+            Duration maxTime = Duration.ofMillis(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            matches.addAll(searchConversation(userId, conversationId, text, order, window, maxTime));
+        }
+        matches.sort(order == SearchPage.Order.RECENCY ? BY_RECENCY : BY_SCORE);
+
+        List<ChatMessage> results = matches.stream()
+                .skip(offset)
+                .limit(pageSize + 1)
+                .map(ScoredMessage::message)
+                .toList();
+        boolean hasMore = results.size() > pageSize;
+        if (hasMore) {
+            results = results.subList(0, pageSize);
+        }
+        return CompletableFuture.completedFuture(SearchPage.builder()
+                .results(results)
+                .page(Math.max(page, 0))
+                .hasMore(hasMore && offset + pageSize < maxResults)
+                .conversationsSearched(conversationIds.size())
+                .truncated(truncated)
+                .archivedBefore(messageArchive.isEnabled() ? LocalDateTime.now().minus(messageArchive.maxHotAge()) : null)
+                .build());
+    }
+
+    // Equality on conversationId is what lets Mongo use the compound text index
+    private List<ScoredMessage> searchConversation(String userId, String conversationId, String text,
+                                                   SearchPage.Order order, int limit, Duration maxTime) {
+        TextQuery query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(text));
+        query.includeScore(SCORE_FIELD);
+        query.addCriteria(Criteria.where("conversationId").is(conversationId));
+        if (order == SearchPage.Order.RECENCY) {
+            query.with(Sort.by(Sort.Direction.DESC, "timestamp").and(Sort.by(Sort.Direction.DESC, "_id")));
+        } else {
+            query.sortByScore();
+            query.with(Sort.by(Sort.Direction.DESC, "timestamp"));
+        }
+        query.limit(limit).maxTime(maxTime);
+
+        List<Document> documents;
+        try {
+            documents = mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(ChatMessage.class));
+        } catch (DataAccessException e) {
+            if (e instanceof QueryTimeoutException
+                    || NestedExceptionUtils.getMostSpecificCause(e) instanceof MongoExecutionTimeoutException) {
+                throw timedOut(userId);
+            }
+            throw e;
+        }
+
+        List<ScoredMessage> matches = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            Number score = document.get(SCORE_FIELD, Number.class);
+            document.remove(SCORE_FIELD);
+            matches.add(new ScoredMessage(mongoTemplate.getConverter().read(ChatMessage.class, document),
+                    score == null ? 0 : score.doubleValue()));
+        }
+        return matches;
+    }
+
+    private List<String> recentConversationIds(String userId) {
+        Query query = new Query(Criteria.where("participants").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "lastMessageAt").and(Sort.by(Sort.Direction.DESC, "id")))
+                .limit(maxConversations);
+        query.fields().include("id");
+        return mongoTemplate.find(query, ConversationSummary.class).stream()
+                .map(ConversationSummary::getId)
+                .toList();
+    }
+
+    private long countSummarizedConversations(String userId) {
+        return mongoTemplate.count(new Query(Criteria.where("participants").is(userId)), ConversationSummary.class);
+    }
+
+    // Conversations whose messages predate summaries; no new ones appear, so a stale entry only lags a backfill
+    private List<String> findUnsummarizedConversationIds(String userId) {
+        Query mine = new Query(new Criteria().orOperator(
+                Criteria.where("senderId").is(userId), Criteria.where("receiverId").is(userId)));
+        List<String> all = mongoTemplate.findDistinct(mine, "conversationId", ChatMessage.class, String.class);
+        if (all.isEmpty()) {
+            return List.of();
+        }
+        Query summarized = new Query(Criteria.where("id").in(all));
+        summarized.fields().include("id");
+        Set<String> withSummary = mongoTemplate.find(summarized, ConversationSummary.class).stream()
+                .map(ConversationSummary::getId)
+                .collect(Collectors.toSet());
+        return all.stream().filter(id -> id != null && !withSummary.contains(id)).sorted().toList();
+    }
+
+    private SearchTimeoutException timedOut(String userId) {
+        logger.warn("Search by {} exceeded {}", userId, timeout);
+        return new SearchTimeoutException("Search took too long, try a more specific query");
+    }
+
+    private record ScoredMessage(ChatMessage message, double score) {}
+}
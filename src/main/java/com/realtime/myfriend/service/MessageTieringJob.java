@@ -0,0 +1,175 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.ArchivedMessageBucket;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.util.MessageCursor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves chat messages older than {@code max-hot-age} from {@code chat_messages} into
+ * {@link MessageArchive}, globally oldest first, so the hot collection and its indexes
+ * stay bounded.
+ *
+ * <p>Only read history is tiered: read receipts, unread counts and search only see
+ * {@code chat_messages}. A conversation stops at its oldest unread direct message, so
+ * everything from there on stays hot until it is read and the archive keeps holding
+ * only a prefix of each conversation. Group messages carry no per-message read state
+ * and are always eligible.</p>
+ *
+ * <p>Each bucket is written before its messages are deleted and is keyed by its first
+ * message, so a run interrupted anywhere simply redoes the last bucket on the next run.
+ * Throughput is capped at {@code max-messages-per-second} and each run at
+ * {@code max-run-time}.</p>
+ */
+@Service
+public class MessageTieringJob {
+    private static final Logger logger = LoggerFactory.getLogger(MessageTieringJob.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageArchive messageArchive;
+    private final ConversationTailCache tailCache;
+    private final Counter messagesMoved;
+    private final Counter bytesMoved;
+    private final Counter bytesStored;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${app.chat.archive.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.chat.archive.messages-per-bucket:200}")
+    private int messagesPerBucket;
+
+    @Value("${app.chat.archive.max-messages-per-second:2000}")
+    private int maxMessagesPerSecond;
+
+    @Value("${app.chat.archive.max-run-time:PT10M}")
+    private Duration maxRunTime;
+
+    public MessageTieringJob(MongoTemplate mongoTemplate, MessageArchive messageArchive,
+                             ConversationTailCache tailCache, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageArchive = messageArchive;
+        this.tailCache = tailCache;
+        this.messagesMoved = Counter.builder("chat.archive.messages")
+                .description("Messages moved from chat_messages to the archive")
+                .register(meterRegistry);
+        this.bytesMoved = Counter.builder("chat.archive.bytes.moved")
+                .description("Uncompressed BSON bytes moved out of chat_messages")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.bytesStored = Counter.builder("chat.archive.bytes.stored")
+                .description("Compressed bytes written to chat_messages_archive")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // Runs off the scheduler thread: a run can take minutes of paced work
+    @Scheduled(fixedDelayString = "${app.chat.archive.interval-ms:3600000}",
+            initialDelayString = "${app.chat.archive.initial-delay-ms:300000}")
+    public void schedule() {
+        if (!messageArchive.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("chat-tiering").start(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                logger.error("Message tiering run failed: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    void runOnce() throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minus(messageArchive.maxHotAge());
+        long started = System.nanoTime();
+        long deadline = started + maxRunTime.toNanos();
+        long moved = 0;
+        long raw = 0;
+        long stored = 0;
+
+        Criteria old = Criteria.where("timestamp").lt(cutoff);
+        Sort oldestFirst = Sort.by(Sort.Direction.ASC, "timestamp").and(Sort.by(Sort.Direction.ASC, "id"));
+        MessageCursor after = null;
+        // Conversations held back by an unread message for the rest of this run
+        Set<String> held = new HashSet<>();
+
+        while (System.nanoTime() < deadline) {
+            // Keyset over what this run has seen, so held messages are not fetched again
+            Criteria criteria = after == null ? old : new Criteria().andOperator(old, new Criteria().orOperator(
+                    Criteria.where("timestamp").gt(after.timestamp()),
+                    Criteria.where("timestamp").is(after.timestamp()).and("id").gt(after.id())));
+            List<ChatMessage> batch = mongoTemplate.find(new Query(criteria).with(oldestFirst).limit(batchSize),
+                    ChatMessage.class);
+            if (batch.isEmpty()) {
+                break;
+            }
+            ChatMessage last = batch.get(batch.size() - 1);
+            after = new MessageCursor(last.getTimestamp(), last.getId());
+
+            Map<String, List<ChatMessage>> byConversation = new LinkedHashMap<>();
+            for (ChatMessage message : batch) {
+                if (held.contains(message.getConversationId())) {
+                    continue;
+                }
+                if (message.getReceiverId() != null && !message.isRead()) {
+                    held.add(message.getConversationId());
+                    continue;
+                }
+                byConversation.computeIfAbsent(message.getConversationId(), k -> new ArrayList<>()).add(message);
+            }
+            int archived = 0;
+            for (Map.Entry<String, List<ChatMessage>> entry : byConversation.entrySet()) {
+                List<ChatMessage> conversation = entry.getValue();
+                for (int from = 0; from < conversation.size(); from += messagesPerBucket) {
+                    List<ChatMessage> chunk = conversation.subList(from, Math.min(from + messagesPerBucket, conversation.size()));
+                    ArchivedMessageBucket bucket = messageArchive.write(entry.getKey(), chunk);
+                    mongoTemplate.remove(Query.query(Criteria.where("id").in(chunk.stream().map(ChatMessage::getId).toList())),
+                            ChatMessage.class);
+                    raw += bucket.getRawBytes();
+                    stored += bucket.getPayload().length;
+                    bytesMoved.increment(bucket.getRawBytes());
+                    bytesStored.increment(bucket.getPayload().length);
+                }
+                messagesMoved.increment(conversation.size());
+                archived += conversation.size();
+                tailCache.invalidate(entry.getKey());
+            }
+            moved += archived;
+
+            // Pace to the configured rate over the whole run
+            long earliest = started + TimeUnit.SECONDS.toNanos(moved) / Math.max(1, maxMessagesPerSecond);
+            long wait = earliest - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        if (moved > 0) {
+            logger.info("Archived {} messages older than {}: {} bytes moved, {} bytes stored in {} ms, {} conversations held by unread messages",
+                    moved, cutoff, raw, stored, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), held.size());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.exception.PartialWriteException;
+import com.realtime.myfriend.repository.MessageStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit pipeline for chat message inserts. Writers park on a bounded queue
+ * and a single flusher turns whatever accumulated into one {@link MessageStore#appendAll},
+ * either when {@code batch-size} messages are waiting or {@code linger-ms} has passed.
+ * A caller's future completes only once the batch holding its message is acknowledged;
+ * when the store reports a partial write, only the messages it did not store fail.
+ */
+@Service
+@RequiredArgsConstructor
+public class MessageWriteBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBatcher.class);
+
+    private final MessageStore messageStore;
+    private final MeterRegistry meterRegistry;
+    private final ConversationSummaryService summaryService;
+    private final ConversationTailCache tailCache;
+
+    @Value("${app.chat.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.chat.group-commit.batch-size:64}")
+    private int batchSize;
+
+    @Value("${app.chat.group-commit.linger-ms:5}")
+    private long lingerMs;
+
+    @Value("${app.chat.group-commit.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingWrite> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private DistributionSummary batchFill;
+    private Timer flushLatency;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        batchFill = DistributionSummary.builder("chat.write.batch.size")
+                .description("Messages per group-commit flush")
+                .maximumExpectedValue((double) batchSize)
+                .register(meterRegistry);
+        flushLatency = Timer.builder("chat.write.flush.latency")
+                .description("Store append per group-commit flush")
+                .register(meterRegistry);
+        Gauge.builder("chat.write.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting for the next group-commit flush")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = Thread.ofPlatform().name("chat-group-commit").daemon().start(this::runFlushLoop);
+        logger.info("Group commit enabled: batchSize={}, lingerMs={}, queueCapacity={}", batchSize, lingerMs, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        // Whatever the flusher did not reach, including writes enqueued while it exited
+        failQueued();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enqueues the message for the next flush; blocks while the queue is full so
+     * bursts push back on the sender instead of growing memory.
+     */
+    public CompletableFuture<ChatMessage> submit(ChatMessage message) {
+        CompletableFuture<ChatMessage> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Group commit is not running"));
+            return future;
+        }
+        PendingWrite write = new PendingWrite(message, future);
+        try {
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        // Raced with stop(): the flusher and the final drain may both be gone
+        if (!running && queue.remove(write)) {
+            future.completeExceptionally(new IllegalStateException("Group commit is not running"));
+        }
+        return future;
+    }
+
+    private void runFlushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+        failQueued();
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            messages.add(write.message());
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<ChatMessage> stored = messages;
+        Exception failure = null;
+        try {
+            // The store assigns ids and sequences back onto the same instances
+            messageStore.appendAll(messages);
+        } catch (PartialWriteException e) {
+            stored = e.getPersisted();
+            failure = e;
+        } catch (Exception e) {
+            stored = List.of();
+            failure = e;
+        }
+        sample.stop(flushLatency);
+        batchFill.record(batch.size());
+        if (failure != null) {
+            logger.error("Group commit stored {} of {} messages: {}", stored.size(), batch.size(), failure.getMessage());
+        }
+        if (!stored.isEmpty()) {
+            recordStored(stored);
+        }
+
+        // Stored messages are a prefix of the batch
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            if (i < stored.size()) {
+                write.future().complete(write.message());
+            } else {
+                write.future().completeExceptionally(failure);
+            }
+        }
+    }
+
+    // The messages are durable by now, so a failure here must not fail their senders
+    private void recordStored(List<ChatMessage> stored) {
+        try {
+            summaryService.recordMessages(stored);
+        } catch (Exception e) {
+            logger.error("Summary update for {} stored messages failed: {}", stored.size(), e.getMessage());
+        }
+        try {
+            tailCache.append(stored);
+        } catch (Exception e) {
+            logger.error("Tail cache update for {} stored messages failed: {}", stored.size(), e.getMessage());
+        }
+    }
+
+    private void failQueued() {
+        List<PendingWrite> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        for (PendingWrite write : leftover) {
+            write.future().completeExceptionally(new IllegalStateException("Group commit stopped"));
+        }
+    }
+
+    private record PendingWrite(ChatMessage message, CompletableFuture<ChatMessage> future) {}
+}
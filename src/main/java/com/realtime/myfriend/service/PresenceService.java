@@ -1,73 +1,241 @@
 package com.realtime.myfriend.service;
 
-import com.realtime.myfriend.repository.UserRepository;
+import com.realtime.myfriend.helper.WebSocketSessionRegistry;
+import com.realtime.myfriend.util.HashedTimingWheel;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.socket.CloseStatus;
+
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Online state from STOMP sessions. Each node decides its own users' transitions from
+ * the sessions it holds and announces them on the {@link ClusterEventBus}; every node
+ * keeps which nodes each user is online on, so {@link #isUserOnline} and presence
+ * fan-out see sessions anywhere. A node that dies without closing its sessions leaves
+ * its users online elsewhere until they connect and disconnect again.
+ */
 @Service
 @RequiredArgsConstructor
 public class PresenceService {
     private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
     
-    private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceWriteBuffer presenceWriteBuffer;
+    private final PresenceSubscriptionRegistry presenceSubscriptions;
+    private final ClusterEventBus clusterEventBus;
+    private final WebSocketSessionRegistry sessionRegistry;
+
+    private static final String PRESENCE_EVENT = "presence";
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${app.presence.liveness-tick-ms:1000}")
+    private long livenessTickMs;
+
+    // Must comfortably exceed the client heartbeat interval configured in WebSocketConfig
+    @Value("${app.presence.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    // Last session closing only flips the user offline if nothing reconnects within this window
+    @Value("${app.presence.reconnect-grace-ms:5000}")
+    private long reconnectGraceMs;
     
-    // Track active users in memory for faster access
+    // Track active users in memory for faster access; includes users inside the reconnect grace
     private final ConcurrentMap<String, LocalDateTime> activeUsers = new ConcurrentHashMap<>();
 
-    @Transactional
-    public void userConnected(String userId) {
-        activeUsers.put(userId, LocalDateTime.now());
-        updateUserPresence(userId, true);
-        notifyPresenceChange(userId, true);
+    // STOMP sessionId -> userId; liveness is tracked per session
+    private final ConcurrentMap<String, String> sessionUsers = new ConcurrentHashMap<>();
+
+    // userId -> open sessions; only mutated inside compute() so transitions are decided atomically
+    private final ConcurrentMap<String, Set<String>> userSessions = new ConcurrentHashMap<>();
+
+    // userId -> epoch millis after which the user goes offline unless a session reopens
+    private final ConcurrentMap<String, Long> pendingOffline = new ConcurrentHashMap<>();
+
+    // userId -> nodes the user is online on, this one included; only mutated inside compute()
+    private final ConcurrentMap<String, Set<String>> onlineNodes = new ConcurrentHashMap<>();
+
+    private HashedTimingWheel sessionLiveness;
+
+    @PostConstruct
+    void initLiveness() {
+        sessionLiveness = new HashedTimingWheel(Duration.ofMillis(livenessTickMs), Duration.ofMillis(idleTimeoutMs));
+        clusterEventBus.on(PRESENCE_EVENT, this::onPresenceEvent);
+    }
+
+    /**
+     * Registers a STOMP session. Only the user's first session (outside the reconnect
+     * grace window) produces an online transition.
+     */
+    public void userConnected(String userId, String sessionId) {
+        sessionUsers.put(sessionId, userId);
+        sessionLiveness.touch(sessionId);
+
+        boolean[] cameOnline = {false};
+        userSessions.compute(userId, (id, sessions) -> {
+            Set<String> open = sessions != null ? sessions : ConcurrentHashMap.newKeySet();
+            open.add(sessionId);
+            pendingOffline.remove(id);
+            cameOnline[0] = activeUsers.put(id, LocalDateTime.now()) == null;
+            return open;
+        });
+
+        if (cameOnline[0]) {
+            announce(userId, true);
+        }
+    }
+
+    /**
+     * Called for every inbound frame, heartbeats included.
+     */
+    public void sessionActive(String sessionId) {
+        String userId = sessionUsers.get(sessionId);
+        if (userId != null) {
+            sessionLiveness.touch(sessionId);
+            activeUsers.put(userId, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Drops one session; when it was the user's last, schedules the offline transition
+     * after the reconnect grace period.
+     */
+    public void sessionClosed(String sessionId) {
+        sessionLiveness.remove(sessionId);
+        String userId = sessionUsers.remove(sessionId);
+        if (userId == null) {
+            return;
+        }
+        userSessions.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(sessionId);
+            if (sessions.isEmpty()) {
+                pendingOffline.put(id, System.currentTimeMillis() + reconnectGraceMs);
+                return null;
+            }
+            return sessions;
+        });
     }
 
-    @Transactional
+    /**
+     * Forces the user offline immediately, regardless of open sessions (logout, account deletion).
+     */
     public void userDisconnected(String userId) {
-        activeUsers.remove(userId);
-        updateUserPresence(userId, false);
-        notifyPresenceChange(userId, false);
+        Set<String> sessions = userSessions.remove(userId);
+        if (sessions != null) {
+            for (String sessionId : sessions) {
+                sessionUsers.remove(sessionId);
+                sessionLiveness.remove(sessionId);
+            }
+        }
+        pendingOffline.remove(userId);
+        goOffline(userId);
     }
 
     public boolean isUserOnline(String userId) {
-        return activeUsers.containsKey(userId);
+        return onlineNodes.containsKey(userId);
+    }
+
+    /**
+     * Whether a push to the user may reach a session. Always in relay mode: the relay
+     * and its user registry find the session on whichever node holds it, even when a
+     * presence event was lost with a relay connection.
+     */
+    public boolean mayBeConnected(String userId) {
+        return clusterEventBus.isRelay() || isUserOnline(userId);
+    }
+
+    @Scheduled(fixedRateString = "${app.presence.liveness-tick-ms:1000}")
+    public void expireIdleSessions() {
+        List<String> expired = sessionLiveness.advance();
+        for (String sessionId : expired) {
+            String userId = sessionUsers.get(sessionId);
+            logger.info("Session {} of user {} idle for {} ms, closing", sessionId, userId, idleTimeoutMs);
+            sessionClosed(sessionId);
+            // Left open, its next frame would find no session here and the user would stay offline
+            sessionRegistry.close(sessionId, CloseStatus.SESSION_NOT_RELIABLE);
+        }
+
+        long now = System.currentTimeMillis();
+        for (var entry : pendingOffline.entrySet()) {
+            if (entry.getValue() > now) {
+                continue;
+            }
+            String userId = entry.getKey();
+            // Decided under the same per-user lock userConnected() takes
+            userSessions.compute(userId, (id, sessions) -> {
+                if (sessions != null && !sessions.isEmpty()) {
+                    return sessions;
+                }
+                if (pendingOffline.remove(id, entry.getValue())) {
+                    goOffline(id);
+                }
+                return null;
+            });
+        }
+    }
+
+    private void goOffline(String userId) {
+        if (activeUsers.remove(userId) != null) {
+            announce(userId, false);
+        }
+    }
+
+    private void announce(String userId, boolean online) {
+        clusterEventBus.publish(PRESENCE_EVENT, nodeId + "|" + userId + "|" + online);
     }
 
-    @Scheduled(fixedRate = 30000) // Every 30 seconds
-    @Transactional
-    public void checkActiveUsers() {
-        LocalDateTime threshold = LocalDateTime.now().minusMinutes(1);
-        
-        activeUsers.entrySet().removeIf(entry -> {
-            if (entry.getValue().isBefore(threshold)) {
-                updateUserPresence(entry.getKey(), false);
-                notifyPresenceChange(entry.getKey(), false);
-                return true;
+    // Only a change of the user's state across all nodes reaches watchers and the database
+    private void onPresenceEvent(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3) {
+            return;
+        }
+        String node = parts[0];
+        String userId = parts[1];
+        boolean online = Boolean.parseBoolean(parts[2]);
+
+        boolean[] changed = {false};
+        onlineNodes.compute(userId, (id, nodes) -> {
+            Set<String> next = nodes != null ? nodes : new HashSet<>();
+            boolean wasOnline = !next.isEmpty();
+            if (online) {
+                next.add(node);
+            } else {
+                next.remove(node);
             }
-            return false;
+            changed[0] = wasOnline != !next.isEmpty();
+            return next.isEmpty() ? null : next;
         });
+
+        if (changed[0]) {
+            // Every node sees the change; the one it came from writes it
+            if (nodeId.equals(node)) {
+                updateUserPresence(userId, online);
+            }
+            notifyPresenceChange(userId, online);
+        }
     }
 
     private void updateUserPresence(String userId, boolean online) {
-        userRepository.findById(userId).ifPresent(user -> {
-            user.setOnline(online);
-            user.setLastSeen(online ? LocalDateTime.now() : user.getLastSeen());
-            userRepository.save(user);
-        });
+        // Persisted in bulk by PresenceWriteBuffer; lastSeen becomes the transition time
+        presenceWriteBuffer.record(userId, online);
     }
 
     private void notifyPresenceChange(String userId, boolean isOnline) {
-        messagingTemplate.convertAndSend("/topic/presence", 
-                new PresenceNotification(userId, isOnline));
+        // Batched and delivered only to sessions watching this user
+        presenceSubscriptions.publish(userId, isOnline);
     }
 
     public record PresenceNotification(String userId, boolean isOnline) {}
-}
\ No newline at end of file
+}
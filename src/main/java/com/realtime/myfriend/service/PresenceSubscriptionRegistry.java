@@ -0,0 +1,194 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.dtos.PresenceDiff;
+import com.realtime.myfriend.helper.PayloadCodecNegotiator;
+import com.realtime.myfriend.service.PresenceService.PresenceNotification;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks which STOMP sessions care about which users' presence and delivers
+ * changes only to them, batched into one {@link PresenceDiff} per session per tick
+ * on {@code /user/queue/presence}. Sessions the {@link SlowConsumerTracker} reports
+ * as slow get nothing; their changes are merged to the latest state per user and sent
+ * as one diff once they recover.
+ */
+@Service
+@RequiredArgsConstructor
+public class PresenceSubscriptionRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceSubscriptionRegistry.class);
+
+    public static final String PRESENCE_DESTINATION = "/queue/presence";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PayloadCodecNegotiator codecNegotiator;
+    private final SlowConsumerTracker slowConsumerTracker;
+
+    @Value("${app.presence.max-interests-per-session:1000}")
+    private int maxInterestsPerSession;
+
+    // sessionId -> what that session watches
+    private final ConcurrentMap<String, SessionInterest> sessions = new ConcurrentHashMap<>();
+    // watched userId -> sessions watching it
+    private final ConcurrentMap<String, Set<String>> watchers = new ConcurrentHashMap<>();
+    // userId -> latest state since the last tick
+    private final ConcurrentMap<String, Boolean> pendingChanges = new ConcurrentHashMap<>();
+    // sessionId -> userId -> latest state held back while the session is slow
+    private final ConcurrentMap<String, Map<String, Boolean>> deferred = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a session that just connected, with no interests yet.
+     */
+    public void open(String sessionId, String username) {
+        sessions.putIfAbsent(sessionId, new SessionInterest(username, Set.of(), false));
+    }
+
+    public boolean isOpen(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    /**
+     * Replaces the interest set of a session with the one its client asked for.
+     *
+     * @return the interests kept, at most {@code max-interests-per-session}
+     */
+    public Set<String> subscribe(String sessionId, String username, Collection<String> userIds) {
+        Set<String> interests = cap(userIds);
+        sessions.compute(sessionId, (id, previous) ->
+                replace(id, previous, new SessionInterest(username, interests, true)));
+        logger.debug("Session {} of {} watches presence of {} users", sessionId, username, interests.size());
+        return interests;
+    }
+
+    /**
+     * Sets the interests a session starts with, unless its client already subscribed
+     * explicitly.
+     *
+     * @return false if the session is gone or was never opened
+     */
+    public boolean subscribeDefaults(String sessionId, Collection<String> userIds) {
+        Set<String> interests = cap(userIds);
+        return sessions.computeIfPresent(sessionId, (id, current) -> current.explicit()
+                ? current
+                : replace(id, current, new SessionInterest(current.username(), interests, false))) != null;
+    }
+
+    public void unsubscribe(String sessionId) {
+        deferred.remove(sessionId);
+        sessions.computeIfPresent(sessionId, (id, interest) -> {
+            interest.userIds().forEach(userId -> removeWatcher(userId, id));
+            return null;
+        });
+    }
+
+    public void publish(String userId, boolean online) {
+        pendingChanges.put(userId, online);
+    }
+
+    /**
+     * Sends an immediate frame to one session, e.g. the current state right after it subscribes.
+     */
+    public void sendToSession(String sessionId, List<PresenceNotification> changes) {
+        SessionInterest interest = sessions.get(sessionId);
+        if (interest != null && !changes.isEmpty()) {
+            send(sessionId, interest.username(), changes);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.presence.fanout-interval-ms:250}")
+    public void flush() {
+        if (pendingChanges.isEmpty() && deferred.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<PresenceNotification>> framesBySession = new HashMap<>();
+        for (String userId : pendingChanges.keySet()) {
+            Boolean online = pendingChanges.remove(userId);
+            Set<String> interested = online == null ? null : watchers.get(userId);
+            if (interested == null) {
+                continue;
+            }
+            PresenceNotification change = new PresenceNotification(userId, online);
+            for (String sessionId : interested) {
+                framesBySession.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(change);
+            }
+        }
+
+        for (String sessionId : deferred.keySet()) {
+            framesBySession.putIfAbsent(sessionId, new ArrayList<>());
+        }
+
+        framesBySession.forEach((sessionId, changes) -> {
+            SessionInterest interest = sessions.get(sessionId);
+            if (interest == null) {
+                deferred.remove(sessionId);
+            } else if (slowConsumerTracker.isSlow(sessionId)) {
+                Map<String, Boolean> held = deferred.computeIfAbsent(sessionId, k -> new HashMap<>());
+                changes.forEach(change -> held.put(change.userId(), change.isOnline()));
+            } else {
+                send(sessionId, interest.username(), merge(deferred.remove(sessionId), changes));
+            }
+        });
+    }
+
+    private static List<PresenceNotification> merge(Map<String, Boolean> held, List<PresenceNotification> changes) {
+        if (held == null) {
+            return changes;
+        }
+        changes.forEach(change -> held.put(change.userId(), change.isOnline()));
+        List<PresenceNotification> merged = new ArrayList<>(held.size());
+        held.forEach((userId, online) -> merged.add(new PresenceNotification(userId, online)));
+        return merged;
+    }
+
+    private void send(String sessionId, String username, List<PresenceNotification> changes) {
+        try {
+            messagingTemplate.convertAndSendToUser(username, PRESENCE_DESTINATION,
+                    new PresenceDiff(changes, System.currentTimeMillis()),
+                    // Session id header resolves the user destination to that one session only
+                    codecNegotiator.headersForSession(sessionId));
+        } catch (Exception e) {
+            logger.error("Failed to send presence diff to session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private Set<String> cap(Collection<String> userIds) {
+        return userIds.stream()
+                .limit(maxInterestsPerSession)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    // Runs inside the session's compute, so interest changes of one session never interleave
+    private SessionInterest replace(String sessionId, SessionInterest previous, SessionInterest next) {
+        if (previous != null) {
+            previous.userIds().forEach(userId -> removeWatcher(userId, sessionId));
+        }
+        next.userIds().forEach(userId -> watchers.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(sessionId));
+        return next;
+    }
+
+    private void removeWatcher(String userId, String sessionId) {
+        watchers.computeIfPresent(userId, (k, set) -> {
+            set.remove(sessionId);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // explicit: chosen by the client through /app/presence.subscribe rather than the connect defaults
+    private record SessionInterest(String username, Set<String> userIds, boolean explicit) {}
+}
@@ -0,0 +1,103 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Write-behind buffer for user presence. Transitions are collapsed per user to the
+ * latest state and persisted on a fixed interval as one unordered bulk of
+ * field-level {@code $set}s on {@code online}/{@code lastSeen}. A failed bulk puts its
+ * states back unless the user moved on meanwhile, and shutdown flushes what is left.
+ */
+@Component
+public class PresenceWriteBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceWriteBuffer.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ConcurrentMap<String, PendingPresence> pending = new ConcurrentHashMap<>();
+
+    private final Timer flushLatency;
+    private final Counter usersFlushed;
+    private final Counter transitionsCollapsed;
+
+    public PresenceWriteBuffer(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.flushLatency = Timer.builder("presence.flush.latency")
+                .description("Bulk presence write round trip")
+                .register(meterRegistry);
+        this.usersFlushed = Counter.builder("presence.flush.users")
+                .description("User presence documents written by the write-behind buffer")
+                .register(meterRegistry);
+        this.transitionsCollapsed = Counter.builder("presence.flush.collapsed")
+                .description("Presence transitions superseded before reaching the database")
+                .register(meterRegistry);
+    }
+
+    public void record(String userId, boolean online) {
+        PendingPresence previous = pending.put(userId, new PendingPresence(online, LocalDateTime.now()));
+        if (previous != null) {
+            transitionsCollapsed.increment();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        Map<String, PendingPresence> drained = new HashMap<>();
+        for (String userId : pending.keySet()) {
+            PendingPresence state = pending.remove(userId);
+            if (state == null) {
+                continue;
+            }
+            bulk.updateOne(
+                    Query.query(Criteria.where("id").is(userId)),
+                    new Update().set("online", state.online()).set("lastSeen", state.at())
+            );
+            drained.put(userId, state);
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start();
+        try {
+            bulk.execute();
+            usersFlushed.increment(drained.size());
+        } catch (Exception e) {
+            logger.error("Failed to flush presence for {} users, retrying next flush: {}", drained.size(), e.getMessage());
+            // A transition recorded since the drain is newer and wins; the $sets are idempotent
+            drained.forEach(pending::putIfAbsent);
+        } finally {
+            sample.stop(flushLatency);
+        }
+    }
+
+    private record PendingPresence(boolean online, LocalDateTime at) {}
+}
@@ -0,0 +1,185 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.dtos.ReadWatermark;
+import com.realtime.myfriend.helper.PayloadCodecNegotiator;
+import com.realtime.myfriend.repository.MessageStore;
+import com.realtime.myfriend.util.ConversationIds;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collapses read receipts into one "read up to sequence N" watermark per reader per
+ * conversation. Bursts sent while scrolling only raise the pending watermark; each
+ * flush persists it with a single {@link MessageStore#markReadUpTo} and tells the sender with one
+ * {@link ReadWatermark} frame on {@code /user/queue/read}.
+ *
+ * <p>Receipts that list message ids are resolved to a sequence at flush time, off the
+ * inbound STOMP thread. Messages stored before sequence numbers existed resolve to
+ * none and are marked read by id instead.</p>
+ */
+@Service
+public class ReadReceiptCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(ReadReceiptCoalescer.class);
+
+    public static final String READ_DESTINATION = "/queue/read";
+
+    private final MessageStore messageStore;
+    private final ConversationSummaryService summaryService;
+    private final ConversationTailCache tailCache;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final UserService userService;
+    private final PayloadCodecNegotiator codecNegotiator;
+
+    // conversationId|readerId -> highest watermark since the last flush
+    private final ConcurrentMap<String, PendingRead> pending = new ConcurrentHashMap<>();
+
+    private final Counter receiptsCoalesced;
+    private final Timer flushLatency;
+
+    public ReadReceiptCoalescer(MessageStore messageStore,
+                                ConversationSummaryService summaryService, ConversationTailCache tailCache,
+                                SimpMessagingTemplate messagingTemplate,
+                                UserService userService, PayloadCodecNegotiator codecNegotiator,
+                                MeterRegistry meterRegistry) {
+        this.messageStore = messageStore;
+        this.summaryService = summaryService;
+        this.tailCache = tailCache;
+        this.messagingTemplate = messagingTemplate;
+        this.userService = userService;
+        this.codecNegotiator = codecNegotiator;
+        this.receiptsCoalesced = Counter.builder("chat.read.coalesced")
+                .description("Read receipts absorbed into an already pending watermark")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("chat.read.flush.latency")
+                .description("Persisting and announcing one read watermark")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Raises the reader's pending watermark for the conversation with {@code senderId}:
+     * to {@code upToSequence} when given, else to the highest of {@code messageIds},
+     * else to everything sent so far.
+     */
+    public void record(String senderId, String readerId, Long upToSequence, Collection<String> messageIds) {
+        String conversationId = ConversationIds.of(senderId, readerId);
+        PendingRead read = upToSequence != null
+                ? new PendingRead(conversationId, senderId, readerId, upToSequence, Set.of())
+                : messageIds == null || messageIds.isEmpty()
+                // capped at the conversation's newest stored message when applied
+                ? new PendingRead(conversationId, senderId, readerId, Long.MAX_VALUE, Set.of())
+                : new PendingRead(conversationId, senderId, readerId, 0, new HashSet<>(messageIds));
+        pending.merge(conversationId + "|" + readerId, read, (current, next) -> {
+            receiptsCoalesced.increment();
+            return current.merge(next);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.read.flush-interval-ms:500}")
+    public void flush() {
+        for (String key : pending.keySet()) {
+            PendingRead read = pending.remove(key);
+            if (read == null) {
+                continue;
+            }
+            Timer.Sample sample = Timer.start();
+            long upTo;
+            try {
+                upTo = persist(read);
+            } catch (Exception e) {
+                logger.error("Failed to apply read watermark {} for {} in {}, retrying next flush: {}",
+                        read.upToSequence(), read.readerId(), read.conversationId(), e.getMessage());
+                // Back in, merged with anything that arrived meanwhile
+                pending.merge(key, read, PendingRead::merge);
+                sample.stop(flushLatency);
+                continue;
+            }
+            try {
+                if (upTo > 0) {
+                    announce(read, upTo);
+                }
+            } catch (Exception e) {
+                // Stored already; the sender still sees it as partnerReadUpTo in the inbox
+                logger.error("Failed to announce read watermark {} for {} in {}: {}",
+                        upTo, read.readerId(), read.conversationId(), e.getMessage());
+            } finally {
+                sample.stop(flushLatency);
+            }
+        }
+    }
+
+    /**
+     * Applies the watermark, capped at the newest stored message so it never covers a
+     * sequence whose insert is still in flight. A lower sequence that commits after a
+     * higher one stays unread until the next watermark, which covers it again.
+     */
+    private long persist(PendingRead read) {
+        long requested = read.upToSequence();
+        if (!read.messageIds().isEmpty()) {
+            requested = Math.max(requested, messageStore.highestSequence(read.conversationId(), read.messageIds()));
+        }
+        long upTo = Math.min(requested, messageStore.lastStoredSequence(read.conversationId()));
+        if (upTo <= 0) {
+            persistUnnumbered(read, requested > 0);
+            return 0;
+        }
+
+        long marked = messageStore.markReadUpTo(read.conversationId(), read.readerId(), upTo);
+        summaryService.recordWatermark(read.conversationId(), read.readerId(), upTo, marked);
+        tailCache.markRead(read.conversationId(), read.readerId(), upTo);
+        logger.debug("User {} read {} up to sequence {} ({} messages flipped)",
+                read.readerId(), read.conversationId(), upTo, marked);
+        return upTo;
+    }
+
+    // Nothing numbered to cover: the listed ids, or on a read-all every message stored before sequences existed
+    private void persistUnnumbered(PendingRead read, boolean all) {
+        long marked;
+        if (!read.messageIds().isEmpty()) {
+            marked = messageStore.markRead(read.conversationId(), read.readerId(), read.messageIds());
+        } else if (all) {
+            marked = messageStore.markReadUpTo(read.conversationId(), read.readerId(), 0);
+        } else {
+            return;
+        }
+        summaryService.recordRead(read.conversationId(), read.readerId(), marked, false);
+        if (marked > 0) {
+            tailCache.invalidate(read.conversationId());
+        }
+        logger.debug("User {} read {} unnumbered messages in {}", read.readerId(), marked, read.conversationId());
+    }
+
+    private void announce(PendingRead read, long upTo) {
+        String senderUsername = userService.findUsernameById(read.senderId());
+        messagingTemplate.convertAndSendToUser(senderUsername, READ_DESTINATION,
+                new ReadWatermark(read.conversationId(), read.readerId(), upTo, System.currentTimeMillis()),
+                // A newer watermark for the same conversation and reader supersedes this one
+                SlowConsumerTracker.coalescible(codecNegotiator.headersForUser(senderUsername),
+                        "read:" + read.conversationId() + ":" + read.readerId()));
+    }
+
+    private record PendingRead(String conversationId, String senderId, String readerId,
+                               long upToSequence, Set<String> messageIds) {
+
+        PendingRead merge(PendingRead other) {
+            Set<String> ids = messageIds;
+            if (!other.messageIds.isEmpty()) {
+                ids = new HashSet<>(messageIds);
+                ids.addAll(other.messageIds);
+            }
+            return new PendingRead(conversationId, senderId, readerId,
+                    Math.max(upToSequence, other.upToSequence), ids);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.dtos.SlowSession;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-session outbound backlog: frames handed to {@code clientOutboundChannel} that
+ * have not yet been written to the socket, across the executor queue and the
+ * session's send buffer. A session is slow once its backlog reaches the high
+ * watermark and recovers at the low one.
+ *
+ * <p>While a session is slow, frames carrying a {@link #COALESCE_KEY_HEADER} are parked
+ * instead of queued, latest per key, and sent once it recovers. Chat messages carry
+ * no key and keep their order.</p>
+ */
+@Service
+public class SlowConsumerTracker {
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerTracker.class);
+
+    public static final String COALESCE_KEY_HEADER = "coalesce-key";
+
+    private final MessageChannel clientOutboundChannel;
+    private final ConcurrentMap<String, SessionBacklog> sessions = new ConcurrentHashMap<>();
+
+    private final Counter framesCoalesced;
+    private final Counter slowTransitions;
+    private final DistributionSummary backlogAtRecovery;
+
+    @Value("${app.websocket.slow-consumer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.websocket.slow-consumer.high-watermark:256}")
+    private int highWatermark;
+
+    @Value("${app.websocket.slow-consumer.low-watermark:64}")
+    private int lowWatermark;
+
+    public SlowConsumerTracker(@Qualifier("clientOutboundChannel") @Lazy MessageChannel clientOutboundChannel,
+                               MeterRegistry meterRegistry) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.framesCoalesced = Counter.builder("websocket.outbound.coalesced")
+                .description("Coalescible frames parked instead of queued for a slow session")
+                .register(meterRegistry);
+        this.slowTransitions = Counter.builder("websocket.outbound.slow.transitions")
+                .description("Sessions crossing the outbound high watermark")
+                .register(meterRegistry);
+        this.backlogAtRecovery = DistributionSummary.builder("websocket.outbound.slow.parked")
+                .description("Distinct parked frames sent when a slow session recovers")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.slow.sessions", sessions,
+                        s -> s.values().stream().filter(SessionBacklog::isSlow).count())
+                .description("Sessions currently over the outbound high watermark")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.backlog.max", sessions,
+                        s -> s.values().stream().mapToInt(b -> b.pending.get()).max().orElse(0))
+                .description("Largest outbound backlog of any session")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Copies {@code headers} (or starts from empty ones) and tags the frame as
+     * coalescible: a later frame with the same key supersedes it.
+     */
+    public static MessageHeaders coalescible(@Nullable MessageHeaders headers, String key) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (headers != null) {
+            accessor.copyHeaders(headers);
+        }
+        accessor.setNativeHeader(COALESCE_KEY_HEADER, key);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    public void register(String sessionId, @Nullable String username) {
+        sessions.put(sessionId, new SessionBacklog(username));
+    }
+
+    public void unregister(String sessionId) {
+        SessionBacklog backlog = sessions.remove(sessionId);
+        if (backlog != null && backlog.isSlow()) {
+            logger.info("Slow session {} of {} closed with {} frames outstanding and {} parked",
+                    sessionId, backlog.username, backlog.pending.get(), backlog.parked.size());
+        }
+    }
+
+    /**
+     * Called as a frame enters {@code clientOutboundChannel}.
+     *
+     * @return the frame to queue, or {@code null} if it was parked
+     */
+    @Nullable
+    public Message<?> onEnqueue(Message<?> message) {
+        SessionBacklog backlog = backlogOf(message);
+        if (backlog == null) {
+            return message;
+        }
+
+        String key = enabled && backlog.isSlow() ? coalesceKey(message) : null;
+        if (key != null) {
+            backlog.parked.put(key, message);
+            framesCoalesced.increment();
+            return null;
+        }
+
+        int pending = backlog.pending.incrementAndGet();
+        if (enabled && pending >= highWatermark && backlog.slowSince.compareAndSet(0, System.currentTimeMillis())) {
+            slowTransitions.increment();
+            logger.warn("Session {} of {} is a slow consumer: {} outbound frames pending",
+                    SimpMessageHeaderAccessor.getSessionId(message.getHeaders()), backlog.username, pending);
+        }
+        return message;
+    }
+
+    /**
+     * Called when a queued frame will never reach the socket, e.g. the executor rejected it.
+     */
+    public void onDropped(Message<?> message) {
+        SessionBacklog backlog = backlogOf(message);
+        if (backlog != null) {
+            decrement(backlog);
+        }
+    }
+
+    /**
+     * Called after a frame has been written to the socket.
+     */
+    public void onSent(String sessionId) {
+        SessionBacklog backlog = sessions.get(sessionId);
+        if (backlog == null) {
+            return;
+        }
+        int pending = decrement(backlog);
+        long since = backlog.slowSince.get();
+        if (since != 0 && pending <= lowWatermark && backlog.slowSince.compareAndSet(since, 0)) {
+            logger.info("Session {} of {} recovered after {} ms", sessionId, backlog.username,
+                    System.currentTimeMillis() - since);
+            releaseParked(backlog);
+        }
+    }
+
+    public boolean isSlow(String sessionId) {
+        SessionBacklog backlog = sessions.get(sessionId);
+        return enabled && backlog != null && backlog.isSlow();
+    }
+
+    public List<SlowSession> slowSessions() {
+        return sessions.entrySet().stream()
+                .filter(entry -> entry.getValue().isSlow())
+                .map(entry -> {
+                    SessionBacklog backlog = entry.getValue();
+                    return new SlowSession(entry.getKey(), backlog.username, backlog.pending.get(), backlog.parked.size(),
+                            LocalDateTime.ofInstant(Instant.ofEpochMilli(backlog.slowSince.get()), ZoneId.systemDefault()));
+                })
+                .sorted(Comparator.comparingInt(SlowSession::getPending).reversed())
+                .toList();
+    }
+
+    private void releaseParked(SessionBacklog backlog) {
+        int released = 0;
+        // Re-check: a frame may be parked concurrently with the recovery
+        while (!backlog.parked.isEmpty() && !backlog.isSlow()) {
+            for (String key : backlog.parked.keySet()) {
+                Message<?> message = backlog.parked.remove(key);
+                if (message != null) {
+                    clientOutboundChannel.send(message);
+                    released++;
+                }
+            }
+        }
+        backlogAtRecovery.record(released);
+    }
+
+    @Nullable
+    private SessionBacklog backlogOf(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    @Nullable
+    private static String coalesceKey(Message<?> message) {
+        Object nativeHeaders = message.getHeaders().get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders instanceof Map<?, ?> headers
+                && headers.get(COALESCE_KEY_HEADER) instanceof List<?> values && !values.isEmpty()) {
+            return String.valueOf(values.get(0));
+        }
+        return null;
+    }
+
+    // Frames the handler writes directly (e.g. ERROR) never went through the channel
+    private static int decrement(SessionBacklog backlog) {
+        return backlog.pending.updateAndGet(v -> v > 0 ? v - 1 : 0);
+    }
+
+    private static final class SessionBacklog {
+        private final String username;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong slowSince = new AtomicLong(); // epoch millis, 0 while healthy
+        private final ConcurrentMap<String, Message<?>> parked = new ConcurrentHashMap<>();
+
+        private SessionBacklog(String username) {
+            this.username = username;
+        }
+
+        private boolean isSlow() {
+            return slowSince.get() != 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.realtime.myfriend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded id ↔ username cache. Both directions are filled together so either
+ * lookup warms the other; entries expire after {@code ttl} and are dropped
+ * explicitly whenever a user record changes.
+ */
+@Component
+public class UserIdentityCache {
+
+    private final Cache<String, String> usernameById;
+    private final Cache<String, String> idByUsername;
+
+    public UserIdentityCache(
+            @Value("${app.cache.user-identity.max-size:50000}") long maxSize,
+            @Value("${app.cache.user-identity.ttl:PT10M}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        this.usernameById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idByUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usernameById, "user.identity.username-by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idByUsername, "user.identity.id-by-username");
+    }
+
+    public String usernameForId(String userId, Function<String, String> loader) {
+        return usernameById.get(userId, id -> {
+            String username = loader.apply(id);
+            idByUsername.put(username, id);
+            return username;
+        });
+    }
+
+    public String idForUsername(String username, Function<String, String> loader) {
+        return idByUsername.get(username, name -> {
+            String userId = loader.apply(name);
+            usernameById.put(userId, name);
+            return userId;
+        });
+    }
+
+    public void invalidate(String userId) {
+        String username = usernameById.getIfPresent(userId);
+        usernameById.invalidate(userId);
+        if (username != null) {
+            idByUsername.invalidate(username);
+        }
+        // Reverse entry may outlive the forward one after eviction; rare path, so a scan is fine
+        idByUsername.asMap().values().removeIf(userId::equals);
+    }
+
+    public CacheStats usernameByIdStats() {
+        return usernameById.stats();
+    }
+
+    public CacheStats idByUsernameStats() {
+        return idByUsername.stats();
+    }
+}
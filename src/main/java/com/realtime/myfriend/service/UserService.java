@@ -6,6 +6,7 @@ import com.realtime.myfriend.entity.User;
 import com.realtime.myfriend.entity.User.Role;
 import com.realtime.myfriend.exception.UserNotFoundException;
 import com.realtime.myfriend.repository.UserRepository;
+import com.realtime.myfriend.security.UserStatusChecker;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +26,8 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PresenceService presenceService;
+    private final UserIdentityCache identityCache;
+    private final UserStatusChecker userStatusChecker;
 
     public CompletableFuture<User> getUserById(String userId) {
         return CompletableFuture.supplyAsync(() ->
@@ -85,7 +88,9 @@ public class UserService {
             user.setGender(updatedUser.getGender());
             user.setUpdatedAt(LocalDateTime.now());
 
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            identityCache.invalidate(userId);
+            return saved;
         });
     }
 
@@ -96,6 +101,8 @@ public class UserService {
                 throw new UserNotFoundException("User not found with id: " + userId);
             }
             userRepository.deleteById(userId);
+            identityCache.invalidate(userId);
+            userStatusChecker.invalidate(userId);
             presenceService.userDisconnected(userId);
         });
     }
@@ -109,21 +116,23 @@ public class UserService {
             user.setRole(Role.ADMIN);
             user.setUpdatedAt(LocalDateTime.now());
 
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            identityCache.invalidate(userId);
+            return saved;
         });
     }
 
     public String findIdByUsername(String username) {
-        return userRepository.findByUsername(username)
+        return identityCache.idForUsername(username, name -> userRepository.findByUsername(name)
                 .map(User::getId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+                .orElseThrow(() -> new RuntimeException("User not found")));
     }
 
 
     public String findUsernameById(String senderId) {
-        return userRepository.findById(senderId)
+        return identityCache.usernameForId(senderId, id -> userRepository.findById(id)
                 .map(User::getUsername)
-                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + senderId));
+                .orElseThrow(() -> new UserNotFoundException("User not found with id: " + id)));
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.realtime.myfriend.util;
+
+/**
+ * Order-independent key for the pair of users in a one-to-one conversation,
+ * so that A→B and B→A traffic shares one index range. Group conversations
+ * use {@code g:<groupId>}.
+ */
+public final class ConversationIds {
+
+    private static final String SEPARATOR = ":";
+    private static final String GROUP_PREFIX = "g:";
+
+    private ConversationIds() {
+    }
+
+    public static String of(String userAId, String userBId) {
+        return userAId.compareTo(userBId) <= 0
+                ? userAId + SEPARATOR + userBId
+                : userBId + SEPARATOR + userAId;
+    }
+
+    public static String forGroup(String groupId) {
+        return GROUP_PREFIX + groupId;
+    }
+
+    public static boolean isGroup(String conversationId) {
+        return conversationId != null && conversationId.startsWith(GROUP_PREFIX);
+    }
+}
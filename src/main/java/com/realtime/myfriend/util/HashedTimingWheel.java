@@ -0,0 +1,85 @@
+package com.realtime.myfriend.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel for idle-timeout tracking. Every {@link #touch} pushes a key's
+ * deadline to {@code now + timeout}; {@link #advance} moves one tick and returns only
+ * the keys that expired on it, so the cost of a tick is proportional to what expires
+ * rather than to how many keys are tracked.
+ *
+ * <p>The wheel is sized one slot longer than the timeout, so a slot never holds a
+ * key from a later rotation.</p>
+ */
+public class HashedTimingWheel {
+
+    private final List<Set<String>> slots;
+    private final ConcurrentMap<String, Long> deadlines = new ConcurrentHashMap<>();
+    private final AtomicLong currentTick = new AtomicLong();
+    private final long timeoutTicks;
+
+    public HashedTimingWheel(Duration tick, Duration timeout) {
+        this.timeoutTicks = Math.max(1, (timeout.toMillis() + tick.toMillis() - 1) / tick.toMillis());
+        int wheelSize = (int) timeoutTicks + 1;
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    public void touch(String key) {
+        long deadline = currentTick.get() + timeoutTicks;
+        Long previous = deadlines.put(key, deadline);
+        if (previous != null && previous != deadline) {
+            slotFor(previous).remove(key);
+        }
+        slotFor(deadline).add(key);
+    }
+
+    public void remove(String key) {
+        Long deadline = deadlines.remove(key);
+        if (deadline != null) {
+            slotFor(deadline).remove(key);
+        }
+    }
+
+    public boolean contains(String key) {
+        return deadlines.containsKey(key);
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Advances the wheel by one tick and returns the keys whose deadline has passed.
+     */
+    public List<String> advance() {
+        long tick = currentTick.incrementAndGet();
+        Set<String> slot = slotFor(tick);
+        List<String> expired = new ArrayList<>();
+
+        for (String key : slot) {
+            Long deadline = deadlines.get(key);
+            if (deadline == null || slotFor(deadline) != slot) {
+                slot.remove(key); // stale entry left behind by a concurrent touch
+            } else if (deadline <= tick) {
+                slot.remove(key);
+                if (deadlines.remove(key, deadline)) {
+                    expired.add(key);
+                }
+            }
+        }
+        return expired;
+    }
+
+    private Set<String> slotFor(long tick) {
+        return slots.get((int) (tick % slots.size()));
+    }
+}
@@ -0,0 +1,41 @@
+package com.realtime.myfriend.util;
+
+import com.realtime.myfriend.exception.InvalidOperationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position over {@code (timestamp, _id)}.
+ * Clients only ever see the encoded token and hand it back unchanged.
+ */
+public record MessageCursor(LocalDateTime timestamp, String id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static MessageCursor of(LocalDateTime timestamp, String id) {
+        // Mongo stores dates with millisecond precision, so the cursor must too
+        return new MessageCursor(timestamp.truncatedTo(ChronoUnit.MILLIS), id);
+    }
+
+    public String encode() {
+        String raw = timestamp + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(SEPARATOR);
+            if (split <= 0 || split == raw.length() - 1) {
+                throw new InvalidOperationException("Malformed cursor");
+            }
+            return new MessageCursor(LocalDateTime.parse(raw.substring(0, split)), raw.substring(split + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidOperationException("Malformed cursor");
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.realtime.myfriend.util;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.repository.ChatMessageRepository;
+import com.realtime.myfriend.repository.MessageStore;
+import com.realtime.myfriend.repository.MongoMessageStore;
+import com.realtime.myfriend.repository.segment.SegmentLogMessageStore;
+import com.realtime.myfriend.service.ConversationSequenceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Compares append throughput and first-page read latency of the {@link MessageStore}
+ * implementations. The segment log runs in a temporary directory; MongoDB is measured
+ * too when a connection string is given, against a throwaway database:
+ * {@code java -cp ... com.realtime.myfriend.util.MessageStoreBenchmark 20000 mongodb://localhost:27017}
+ */
+public class MessageStoreBenchmark {
+
+    private static final int CONVERSATIONS = 100;
+    private static final int PAGE_SIZE = 50;
+    private static final int BATCH_SIZE = 64;
+
+    // Keeps the JIT from discarding the measured work
+    private static volatile long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        String mongoUri = args.length > 1 ? args[1] : System.getenv("MONGODB_URI");
+
+        System.out.printf("%-12s %14s %14s %12s %12s%n",
+                "store", "append msg/s", "batch msg/s", "read p50 us", "read p99 us");
+
+        Path directory = Files.createTempDirectory("segment-log-bench");
+        try {
+            SegmentLogMessageStore segmentLog = new SegmentLogMessageStore(directory.toString(),
+                    1 << 20, 32, 5, 64, true, 256, 4096, 600_000, new SimpleMeterRegistry());
+            segmentLog.start();
+            try {
+                run("segment-log", segmentLog, messages);
+            } finally {
+                segmentLog.stop();
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        if (mongoUri == null || mongoUri.isBlank()) {
+            System.out.println("mongo: skipped, pass a connection string or set MONGODB_URI");
+            return;
+        }
+        String database = "message_store_bench_" + System.currentTimeMillis();
+        try (MongoClient client = MongoClients.create(mongoUri)) {
+            MongoTemplate mongoTemplate = new MongoTemplate(client, database);
+            try {
+                ChatMessageRepository repository = new MongoRepositoryFactory(mongoTemplate)
+                        .getRepository(ChatMessageRepository.class);
+                run("mongo", new MongoMessageStore(repository, mongoTemplate,
+                        new ConversationSequenceService(mongoTemplate)), messages);
+            } finally {
+                mongoTemplate.getDb().drop();
+            }
+        }
+    }
+
+    private static void run(String name, MessageStore store, int messages) {
+        // Warm-up on conversations the measured runs do not touch
+        appendEach(store, "warmup", Math.min(messages, 2_000));
+
+        long start = System.nanoTime();
+        appendEach(store, "single", messages);
+        double appendRate = messages / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        appendBatched(store, "batch", messages);
+        double batchRate = messages / ((System.nanoTime() - start) / 1e9);
+
+        long[] latencies = new long[messages / 10];
+        long sink = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            long readStart = System.nanoTime();
+            sink += store.page(conversation("single", i), null, true, PAGE_SIZE + 1).size();
+            latencies[i] = System.nanoTime() - readStart;
+        }
+        blackhole += sink;
+        Arrays.sort(latencies);
+
+        System.out.printf("%-12s %14.0f %14.0f %12.1f %12.1f%n", name, appendRate, batchRate,
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3);
+    }
+
+    private static void appendEach(MessageStore store, String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            store.append(message(conversation(prefix, i), i));
+        }
+    }
+
+    private static void appendBatched(MessageStore store, String prefix, int count) {
+        List<ChatMessage> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            batch.add(message(conversation(prefix, i), i));
+            if (batch.size() == BATCH_SIZE || i == count - 1) {
+                store.appendAll(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+    }
+
+    private static String conversation(String prefix, int i) {
+        return prefix + "-" + (i % CONVERSATIONS);
+    }
+
+    private static ChatMessage message(String conversationId, int i) {
+        return ChatMessage.builder()
+                .senderId("65f1c2a9e4b0a1b2c3d4e001")
+                .receiverId("65f1c2a9e4b0a1b2c3d4e002")
+                .conversationId(conversationId)
+                .content("Message " + i + ": on my way, be there in ten minutes")
+                .timestamp(LocalDateTime.now())
+                .read(false)
+                .build();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+    }
+
+    private static void deleteRecursively(Path directory) throws Exception {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
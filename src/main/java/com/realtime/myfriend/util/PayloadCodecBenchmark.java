@@ -0,0 +1,97 @@
+package com.realtime.myfriend.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realtime.myfriend.dtos.PresenceDiff;
+import com.realtime.myfriend.dtos.ReadReceipt;
+import com.realtime.myfriend.dtos.ReadWatermark;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.helper.CborMessageConverter;
+import com.realtime.myfriend.service.PresenceService.PresenceNotification;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares encoded size and encode/decode time of the STOMP payloads in JSON
+ * (the default converter's mapper) and CBOR. Run with an optional iteration count:
+ * {@code java -cp ... com.realtime.myfriend.util.PayloadCodecBenchmark 200000}
+ */
+public class PayloadCodecBenchmark {
+
+    // Keeps the JIT from discarding the measured work
+    private static volatile long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper cbor = CborMessageConverter.defaultMapper();
+
+        Map<String, Object> samples = new LinkedHashMap<>();
+        samples.put("ChatMessage", ChatMessage.builder()
+                .id("65f1c2a9e4b0a1b2c3d4e5f6")
+                .senderId("65f1c2a9e4b0a1b2c3d4e001")
+                .receiverId("65f1c2a9e4b0a1b2c3d4e002")
+                .conversationId(ConversationIds.of("65f1c2a9e4b0a1b2c3d4e001", "65f1c2a9e4b0a1b2c3d4e002"))
+                .content("On my way, be there in ten minutes")
+                .timestamp(LocalDateTime.now())
+                .read(false)
+                .build());
+        samples.put("ReadReceipt", new ReadReceipt("65f1c2a9e4b0a1b2c3d4e001", "65f1c2a9e4b0a1b2c3d4e002",
+                List.of("65f1c2a9e4b0a1b2c3d4e5f6", "65f1c2a9e4b0a1b2c3d4e5f7", "65f1c2a9e4b0a1b2c3d4e5f8"), null));
+        samples.put("ReadWatermark", new ReadWatermark(
+                ConversationIds.of("65f1c2a9e4b0a1b2c3d4e001", "65f1c2a9e4b0a1b2c3d4e002"),
+                "65f1c2a9e4b0a1b2c3d4e002", 1842, System.currentTimeMillis()));
+        List<PresenceNotification> changes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            changes.add(new PresenceNotification("65f1c2a9e4b0a1b2c3d4e%03d".formatted(i), i % 2 == 0));
+        }
+        samples.put("PresenceDiff(20)", new PresenceDiff(changes, System.currentTimeMillis()));
+
+        System.out.printf("%-18s %10s %10s %8s %14s %14s %14s %14s%n",
+                "payload", "json B", "cbor B", "ratio", "json enc ns", "cbor enc ns", "json dec ns", "cbor dec ns");
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            Object value = sample.getValue();
+            byte[] jsonBytes = json.writeValueAsBytes(value);
+            byte[] cborBytes = cbor.writeValueAsBytes(value);
+
+            System.out.printf("%-18s %10d %10d %8.2f %14.0f %14.0f %14.0f %14.0f%n",
+                    sample.getKey(), jsonBytes.length, cborBytes.length, (double) cborBytes.length / jsonBytes.length,
+                    encodeNanos(json, value, iterations), encodeNanos(cbor, value, iterations),
+                    decodeNanos(json, jsonBytes, value.getClass(), iterations),
+                    decodeNanos(cbor, cborBytes, value.getClass(), iterations));
+        }
+    }
+
+    private static double encodeNanos(ObjectMapper mapper, Object value, int iterations) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) { // warm-up
+            sink += mapper.writeValueAsBytes(value).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += mapper.writeValueAsBytes(value).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        blackhole += sink;
+        return (double) elapsed / iterations;
+    }
+
+    private static double decodeNanos(ObjectMapper mapper, byte[] bytes, Class<?> type, int iterations) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) { // warm-up
+            sink += mapper.readValue(bytes, type).hashCode();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += mapper.readValue(bytes, type).hashCode();
+        }
+        long elapsed = System.nanoTime() - start;
+        blackhole += sink;
+        return (double) elapsed / iterations;
+    }
+}
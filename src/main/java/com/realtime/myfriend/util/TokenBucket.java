@@ -0,0 +1,46 @@
+package com.realtime.myfriend.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in its GCRA form: the whole state is one theoretical arrival
+ * time, advanced with compare-and-set, so concurrent callers never block each other
+ * and nothing is allocated per request. Allows bursts of {@code capacity} and a
+ * sustained {@code refillPerSecond}.
+ */
+public final class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(long capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity must be >= 1 and refillPerSecond > 0");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+        this.burstToleranceNanos = (capacity - 1) * emissionIntervalNanos;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @return 0 if the request may proceed, otherwise the nanoseconds until a token frees up
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long arrival = current - now > 0 ? current : now;
+            long wait = arrival - now - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, arrival + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
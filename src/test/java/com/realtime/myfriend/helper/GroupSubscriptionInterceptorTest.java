@@ -0,0 +1,157 @@
+package com.realtime.myfriend.helper;
+
+import com.realtime.myfriend.service.ClusterEventBus;
+import com.realtime.myfriend.service.GroupService;
+import com.realtime.myfriend.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GroupSubscriptionInterceptorTest {
+
+    private GroupService groupService;
+    private GroupSubscriptionInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        groupService = mock(GroupService.class);
+        UserService userService = mock(UserService.class);
+        when(userService.findIdByUsername("alice")).thenReturn("u1");
+        when(groupService.isMember("g1", "u1")).thenReturn(true);
+        interceptor = new GroupSubscriptionInterceptor(groupService, userService);
+    }
+
+    @Test
+    void wildcardWouldReachGroupTopicOnTheSimpleBroker() {
+        DefaultSubscriptionRegistry registry = new DefaultSubscriptionRegistry();
+        registry.registerSubscription(frame(StompCommand.SUBSCRIBE, "/topic/**"));
+
+        assertThat(registry.findSubscriptions(frame(StompCommand.MESSAGE, GroupService.GROUP_TOPIC_PREFIX + "g2")))
+                .containsKey("session-1");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/topic/**", "/topic/*", "/topic/group.*", "/topic/group.g?", "/topic/{name}",
+            "/topic/#", "/topic/group.#", "/topic*/**"})
+    void rejectsPatternSubscriptionsUnderTopic(String destination) {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, destination), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void membersSubscribeToTheirGroup() {
+        Message<?> subscribe = frame(StompCommand.SUBSCRIBE, GroupService.GROUP_TOPIC_PREFIX + "g1");
+
+        assertThat(interceptor.preSend(subscribe, null)).isSameAs(subscribe);
+    }
+
+    @Test
+    void nonMembersAreRejected() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, GroupService.GROUP_TOPIC_PREFIX + "g2"), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void directSendsToGroupTopicsAreRejected() {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SEND, GroupService.GROUP_TOPIC_PREFIX + "g1"), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void exactSubscriptionsElsewhereAreUntouched() {
+        Message<?> subscribe = frame(StompCommand.SUBSCRIBE, "/user/queue/messages");
+
+        assertThat(interceptor.preSend(subscribe, null)).isSameAs(subscribe);
+    }
+
+    @Test
+    void removedMemberStopsReceivingFramesOnTheSimpleBroker() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        clientInbound.addInterceptor(interceptor);
+        clientOutbound.addInterceptor(interceptor);
+        List<Message<?>> delivered = new ArrayList<>();
+        clientOutbound.subscribe(delivered::add);
+        SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(
+                clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+
+        // The simple broker only delivers to sessions it saw connect
+        clientInbound.send(frame(StompCommand.CONNECT, null));
+        clientInbound.send(frame(StompCommand.SUBSCRIBE, GroupService.GROUP_TOPIC_PREFIX + "g1"));
+        delivered.clear();
+        brokerChannel.send(groupMessage("g1"));
+        assertThat(delivered).hasSize(1);
+
+        when(groupService.isMember("g1", "u1")).thenReturn(false);
+        brokerChannel.send(groupMessage("g1"));
+        assertThat(delivered).hasSize(1);
+    }
+
+    @Test
+    void relayFramesForFormerMembersAreDropped() {
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, GroupService.GROUP_TOPIC_PREFIX + "g1"), null);
+        Message<?> relayed = frame(StompCommand.MESSAGE, GroupService.GROUP_TOPIC_PREFIX + "g1");
+        assertThat(interceptor.preSend(relayed, null)).isSameAs(relayed);
+
+        when(groupService.isMember("g1", "u1")).thenReturn(false);
+        assertThat(interceptor.preSend(relayed, null)).isNull();
+    }
+
+    @Test
+    void groupFramesWithoutACheckedSubscriptionAreDropped() {
+        assertThat(interceptor.preSend(frame(StompCommand.MESSAGE, GroupService.GROUP_TOPIC_PREFIX + "g1"), null)).isNull();
+    }
+
+    @Test
+    void unsubscribeForgetsTheSubscription() {
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, GroupService.GROUP_TOPIC_PREFIX + "g1"), null);
+        interceptor.preSend(frame(StompCommand.UNSUBSCRIBE, null), null);
+
+        assertThat(interceptor.preSend(frame(StompCommand.MESSAGE, GroupService.GROUP_TOPIC_PREFIX + "g1"), null)).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"SUBSCRIBE", "SEND"})
+    void clusterEventsAreReservedForServers(String command) {
+        assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.valueOf(command), ClusterEventBus.DESTINATION), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    private static Message<byte[]> groupMessage(String groupId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(GroupService.GROUP_TOPIC_PREFIX + groupId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setDestination(destination);
+        accessor.setSessionId("session-1");
+        accessor.setSubscriptionId("sub-1");
+        accessor.setUser(new UsernamePasswordAuthenticationToken("alice", null));
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
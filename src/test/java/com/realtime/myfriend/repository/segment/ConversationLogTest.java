@@ -0,0 +1,298 @@
+package com.realtime.myfriend.repository.segment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.helper.CborMessageConverter;
+import com.realtime.myfriend.util.MessageCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ConversationLogTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+    private static final int INDEX_INTERVAL = 4;
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 1, 12, 0);
+    private static final Path MAPS = Path.of("/proc/self/maps");
+
+    private final ObjectMapper mapper = CborMessageConverter.defaultMapper();
+    private final List<ConversationLog> opened = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void closeLogs() {
+        opened.forEach(ConversationLog::close);
+    }
+
+    @Test
+    void pagesVisitEveryMessageOnceInBothDirections() throws IOException {
+        ConversationLog log = open();
+        // One timestamp for all, so the keyset order rests on the ids alone
+        appendMessages(log, 200, NOW);
+        assertThat(segmentFiles()).hasSizeGreaterThan(2);
+
+        List<Long> newestFirst = new ArrayList<>();
+        MessageCursor cursor = null;
+        for (List<ChatMessage> page = log.page(null, true, 7); !page.isEmpty(); page = log.page(cursor, true, 7)) {
+            page.forEach(message -> newestFirst.add(message.getSequence()));
+            ChatMessage oldest = page.get(page.size() - 1);
+            cursor = MessageCursor.of(oldest.getTimestamp(), oldest.getId());
+        }
+
+        List<Long> oldestFirst = new ArrayList<>();
+        cursor = null;
+        for (List<ChatMessage> page = log.page(null, false, 7); !page.isEmpty(); page = log.page(cursor, false, 7)) {
+            page.forEach(message -> oldestFirst.add(message.getSequence()));
+            ChatMessage newest = page.get(page.size() - 1);
+            cursor = MessageCursor.of(newest.getTimestamp(), newest.getId());
+        }
+
+        List<Long> expected = new ArrayList<>();
+        for (long sequence = 1; sequence <= 200; sequence++) {
+            expected.add(sequence);
+        }
+        assertThat(oldestFirst).isEqualTo(expected);
+        assertThat(newestFirst).isEqualTo(expected.reversed());
+    }
+
+    @Test
+    void highestSequenceFindsEveryMessage() throws IOException {
+        ConversationLog log = open();
+        List<ChatMessage> messages = appendMessages(log, 120, NOW);
+
+        for (ChatMessage message : messages) {
+            assertThat(log.highestSequence(List.of(message.getId()), null)).isEqualTo(message.getSequence());
+        }
+        assertThat(log.highestSequence(List.of(messages.get(3).getId(), messages.get(90).getId()), null)).isEqualTo(91);
+        assertThat(log.highestSequence(List.of(messages.get(3).getId()), "someone-else")).isZero();
+    }
+
+    @Test
+    void idsKeepIncreasingAfterTheClockStepsBack() throws IOException {
+        // A log last written by a process whose clock ran decades ahead
+        LocalDateTime future = LocalDateTime.of(2100, 1, 1, 0, 0);
+        ChatMessage earlier = message(1, future);
+        earlier.setId("f00000000000000000000001");
+        earlier.setSequence(1L);
+        Files.createDirectories(directory);
+        Segment segment = Segment.map(directory.resolve("%020d.log".formatted(1)),
+                directory.resolve("%020d.log".formatted(1)), 1, SEGMENT_BYTES, true);
+        segment.append(Segment.MESSAGE, mapper.writeValueAsBytes(earlier));
+        segment.close();
+
+        ConversationLog log = open();
+        List<ChatMessage> appended = appendMessages(log, 20, NOW);
+
+        String previous = earlier.getId();
+        for (ChatMessage message : appended) {
+            assertThat(message.getId()).isGreaterThan(previous);
+            assertThat(message.getTimestamp()).isEqualTo(future);
+            previous = message.getId();
+        }
+        assertThat(log.page(null, true, 50)).extracting(ChatMessage::getSequence)
+                .containsExactly(21L, 20L, 19L, 18L, 17L, 16L, 15L, 14L, 13L, 12L, 11L, 10L, 9L, 8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L);
+        assertThat(log.highestSequence(List.of(appended.get(0).getId()), null)).isEqualTo(2);
+    }
+
+    @Test
+    void recoveryRestoresMessagesAndWatermarks() throws IOException {
+        ConversationLog log = open();
+        appendMessages(log, 150, NOW);
+        log.markReadUpTo("b", 100);
+        close(log);
+
+        ConversationLog reopened = open();
+        assertThat(reopened.lastOrdinal()).isEqualTo(150);
+        List<ChatMessage> all = reopened.afterSequence(0, 1000);
+        assertThat(all).hasSize(150);
+        assertThat(all.get(99).isRead()).isTrue();
+        assertThat(all.get(100).isRead()).isFalse();
+
+        appendMessages(reopened, 1, NOW);
+        assertThat(reopened.lastOrdinal()).isEqualTo(151);
+    }
+
+    @Test
+    void recoveryRebuildsAMissingSegmentIndex() throws IOException {
+        ConversationLog log = open();
+        appendMessages(log, 150, NOW);
+        close(log);
+        Path sealed = segmentFiles().get(0);
+        SegmentIndexFile.delete(sealed);
+
+        ConversationLog reopened = open();
+        assertThat(Files.exists(SegmentIndexFile.pathFor(sealed))).isTrue();
+        assertThat(reopened.afterSequence(0, 1000)).extracting(ChatMessage::getSequence).hasSize(150);
+    }
+
+    @Test
+    void recoveryCutsATornTail() throws IOException {
+        ConversationLog log = open();
+        appendMessages(log, 30, NOW);
+        close(log);
+
+        // A length written ahead of a body that never made it to disk
+        Path active = segmentFiles().get(segmentFiles().size() - 1);
+        try (FileChannel channel = FileChannel.open(active, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int end = endOfRecords(channel);
+            channel.write(ByteBuffer.allocate(8).putInt(64).putInt(0xDEADBEEF).flip(), end);
+            channel.write(ByteBuffer.wrap(new byte[]{Segment.MESSAGE, 1, 2, 3}), end + 8);
+        }
+
+        ConversationLog reopened = open();
+        assertThat(reopened.lastOrdinal()).isEqualTo(30);
+        appendMessages(reopened, 2, NOW);
+        close(reopened);
+
+        ConversationLog again = open();
+        assertThat(again.afterSequence(0, 1000)).extracting(ChatMessage::getSequence)
+                .hasSize(32).endsWith(31L, 32L);
+    }
+
+    @Test
+    void compactionFoldsReadStateIntoSealedSegments() throws IOException {
+        ConversationLog log = open();
+        for (int i = 1; i <= 120; i++) {
+            appendMessages(log, 1, NOW);
+            log.markReadUpTo("b", i);
+        }
+        long sizeBefore = totalSize(segmentFiles());
+
+        long reclaimed = log.compact(2);
+
+        assertThat(reclaimed).isPositive();
+        assertThat(log.afterSequence(0, 1000)).hasSize(120).allMatch(ChatMessage::isRead);
+        close(log);
+        assertThat(directoryListing()).noneMatch(name -> name.endsWith(".compacting"));
+
+        ConversationLog reopened = open();
+        assertThat(totalSize(segmentFiles())).isLessThan(sizeBefore);
+        assertThat(reopened.afterSequence(0, 1000)).extracting(ChatMessage::getSequence).hasSize(120);
+        assertThat(reopened.afterSequence(0, 1000)).allMatch(ChatMessage::isRead);
+        assertThat(reopened.compact(2)).isZero();
+
+        appendMessages(reopened, 1, NOW);
+        assertThat(reopened.afterSequence(120, 10)).extracting(ChatMessage::isRead).containsExactly(false);
+    }
+
+    @Test
+    void compactionUnmapsTheSegmentsItReplaces() throws IOException {
+        assumeTrue(Files.isReadable(MAPS), "needs /proc/self/maps");
+        ConversationLog log = open();
+        for (int i = 1; i <= 120; i++) {
+            appendMessages(log, 1, NOW);
+            log.markReadUpTo("b", i);
+        }
+        long before = mappings();
+
+        assertThat(log.retain()).isTrue();
+        assertThat(log.compact(2)).isPositive();
+        // A running operation may still be reading the replaced segments
+        assertThat(mappings()).isGreaterThan(before);
+
+        log.release();
+        assertThat(mappings()).isEqualTo(before);
+        assertThat(log.afterSequence(0, 1000)).hasSize(120).allMatch(ChatMessage::isRead);
+    }
+
+    @Test
+    void closeWaitsForRunningOperations() throws IOException {
+        ConversationLog log = open();
+        appendMessages(log, 5, NOW);
+
+        assertThat(log.retain()).isTrue();
+        log.close();
+        assertThat(log.closed()).isNotDone();
+        assertThat(log.retain()).isFalse();
+        assertThat(log.afterSequence(0, 10)).hasSize(5);
+
+        log.release();
+        assertThat(log.closed()).isDone();
+    }
+
+    private ConversationLog open() throws IOException {
+        ConversationLog log = ConversationLog.open("a:b", directory, SEGMENT_BYTES, INDEX_INTERVAL, mapper, segment -> {});
+        opened.add(log);
+        return log;
+    }
+
+    private long mappings() throws IOException {
+        try (Stream<String> lines = Files.lines(MAPS)) {
+            return lines.filter(line -> line.contains(directory.toString())).count();
+        }
+    }
+
+    private static void close(ConversationLog log) {
+        log.close();
+        log.closed().join();
+    }
+
+    private List<ChatMessage> appendMessages(ConversationLog log, int count, LocalDateTime timestamp) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message(i, timestamp));
+        }
+        log.append(messages);
+        return messages;
+    }
+
+    private static ChatMessage message(int i, LocalDateTime timestamp) {
+        return ChatMessage.builder()
+                .senderId("a")
+                .receiverId("b")
+                .conversationId("a:b")
+                .content("message " + i)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static int endOfRecords(FileChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        int offset = 0;
+        while (true) {
+            length.clear();
+            channel.read(length, offset);
+            int value = length.flip().getInt();
+            if (value == 0) {
+                return offset;
+            }
+            offset += 8 + value;
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private List<String> directoryListing() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).toList();
+        }
+    }
+
+    private static long totalSize(List<Path> files) throws IOException {
+        long total = 0;
+        for (Path file : files) {
+            total += Files.size(file);
+        }
+        return total;
+    }
+}
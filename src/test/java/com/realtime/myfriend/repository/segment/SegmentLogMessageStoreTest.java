@@ -0,0 +1,152 @@
+package com.realtime.myfriend.repository.segment;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentLogMessageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<SegmentLogMessageStore> started = new ArrayList<>();
+
+    @AfterEach
+    void stopStores() throws InterruptedException {
+        for (SegmentLogMessageStore store : started) {
+            store.stop();
+        }
+    }
+
+    @Test
+    void restartKeepsMessagesSequencesAndReadState() throws InterruptedException {
+        SegmentLogMessageStore store = start(16);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            ids.add(store.append(message("a:b", i)).getId());
+        }
+        assertThat(store.markReadUpTo("a:b", "b", 10)).isEqualTo(10);
+        assertThat(store.markRead("a:b", "b", List.of(ids.get(19)))).isEqualTo(10);
+        store.stop();
+        started.remove(store);
+
+        SegmentLogMessageStore reopened = start(16);
+        assertThat(reopened.currentSequence("a:b")).isEqualTo(40);
+        List<ChatMessage> all = reopened.afterSequence("a:b", 0, 100);
+        assertThat(all).extracting(ChatMessage::getId).containsExactlyElementsOf(ids);
+        assertThat(all.get(19).isRead()).isTrue();
+        assertThat(all.get(20).isRead()).isFalse();
+        assertThat(reopened.append(message("a:b", 40)).getSequence()).isEqualTo(41);
+    }
+
+    @Test
+    void readsOfUnknownConversationsOpenNothing() {
+        SegmentLogMessageStore store = start(16);
+
+        assertThat(store.page("nobody", null, true, 50)).isEmpty();
+        assertThat(store.currentSequence("nobody")).isZero();
+        assertThat(store.markReadUpTo("nobody", "b", 10)).isZero();
+
+        assertThat(openLogs()).isZero();
+        assertThat(directory.toFile().list()).isEmpty();
+    }
+
+    @Test
+    void keepsAtMostTheConfiguredNumberOfLogsOpen() throws InterruptedException {
+        SegmentLogMessageStore store = start(4);
+        for (int round = 0; round < 3; round++) {
+            for (int conversation = 0; conversation < 50; conversation++) {
+                store.append(message("c" + conversation, round));
+            }
+        }
+        awaitOpenLogsAtMost(4);
+
+        for (int conversation = 0; conversation < 50; conversation++) {
+            assertThat(store.afterSequence("c" + conversation, 0, 10))
+                    .extracting(ChatMessage::getSequence).containsExactly(1L, 2L, 3L);
+        }
+        awaitOpenLogsAtMost(4);
+        assertThat(meterRegistry.get("chat.store.open.conversations.max").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void concurrentWritersSurviveEviction() throws Exception {
+        SegmentLogMessageStore store = start(3);
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+        for (int writer = 0; writer < 8; writer++) {
+            int offset = writer;
+            done.add(writers.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    store.append(message("c" + ((i + offset) % 20), i));
+                }
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        writers.shutdown();
+        store.stop();
+        started.remove(store);
+
+        SegmentLogMessageStore reopened = start(3);
+        long total = 0;
+        for (int conversation = 0; conversation < 20; conversation++) {
+            List<Long> sequences = reopened.afterSequence("c" + conversation, 0, 10_000).stream()
+                    .map(ChatMessage::getSequence).toList();
+            assertThat(sequences).containsExactlyElementsOf(
+                    LongStream.rangeClosed(1, sequences.size()).boxed().toList());
+            total += sequences.size();
+        }
+        assertThat(total).isEqualTo(8 * 200);
+    }
+
+    private SegmentLogMessageStore start(int maxOpen) {
+        SegmentLogMessageStore store = new SegmentLogMessageStore(directory.toString(), 4096, 4, 1, 64, true, 256,
+                maxOpen, 600_000, meterRegistry);
+        store.start();
+        started.add(store);
+        return store;
+    }
+
+    private double openLogs() {
+        return meterRegistry.get("chat.store.open.conversations").gauges().stream()
+                .mapToDouble(gauge -> gauge.value()).max().orElse(0);
+    }
+
+    // Caffeine evicts in its maintenance pass, shortly after the write that went over
+    private void awaitOpenLogsAtMost(int limit) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (openLogs() > limit && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(openLogs()).isLessThanOrEqualTo(limit);
+    }
+
+    private static ChatMessage message(String conversationId, int i) {
+        return ChatMessage.builder()
+                .senderId("a")
+                .receiverId("b")
+                .conversationId(conversationId)
+                .content("message " + i)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.realtime.myfriend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.realtime.myfriend.dtos.BroadcastNodeStatus;
+import com.realtime.myfriend.dtos.BroadcastRequest;
+import com.realtime.myfriend.dtos.BroadcastStatus;
+import com.realtime.myfriend.helper.PayloadCodecNegotiator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BroadcastServiceTest {
+
+    // One bus shared by both nodes stands in for the relay delivering every event everywhere
+    @SuppressWarnings("unchecked")
+    private final ClusterEventBus bus = new ClusterEventBus(mock(SimpMessagingTemplate.class),
+            mock(ObjectProvider.class), "simple");
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final MessageChannel outboundA = mock(MessageChannel.class);
+    private final MessageChannel outboundB = mock(MessageChannel.class);
+    private BroadcastService nodeA;
+    private BroadcastService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = node(outboundA);
+        nodeB = node(outboundB);
+        subscribe(nodeA, "a-1", "alice");
+        subscribe(nodeB, "b-1", "bob");
+        subscribe(nodeB, "b-2", "carol");
+    }
+
+    @Test
+    void everyNodeDeliversToItsOwnSessions() {
+        BroadcastStatus started = nodeA.broadcast(new BroadcastRequest(Map.of("text", "maintenance at noon"), null));
+
+        verify(outboundA, timeout(5000)).send(any());
+        verify(outboundB, timeout(5000).times(2)).send(any());
+        // Nodes join the status as their reports arrive
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(nodeA.status(started.getId()).getNodes()).hasSize(2)
+                        .allMatch(node -> node.getState() == BroadcastStatus.State.COMPLETED));
+        assertThat(nodeA.status(started.getId()).getState()).isEqualTo(BroadcastStatus.State.COMPLETED);
+
+        // Either node answers for the whole cluster
+        for (BroadcastService node : new BroadcastService[]{nodeA, nodeB}) {
+            BroadcastStatus status = node.status(started.getId());
+            assertThat(status.getTargetedSessions()).isEqualTo(3);
+            assertThat(status.getDispatched()).isEqualTo(3);
+            assertThat(status.getNodes()).hasSize(2)
+                    .extracting(BroadcastNodeStatus::getTargetedSessions).containsExactlyInAnyOrder(1, 2);
+        }
+    }
+
+    private BroadcastService node(MessageChannel outbound) {
+        when(outbound.send(any())).thenReturn(true);
+        BroadcastService node = new BroadcastService(outbound, new MappingJackson2MessageConverter(),
+                mock(PayloadCodecNegotiator.class), mock(UserService.class), null, bus, objectMapper,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(node, "waveSize", 500);
+        ReflectionTestUtils.setField(node, "waveIntervalMs", 1L);
+        ReflectionTestUtils.setField(node, "maxOutboundBacklog", 1000);
+        return node;
+    }
+
+    private static void subscribe(BroadcastService node, String sessionId, String username) {
+        Principal user = () -> username;
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-" + sessionId);
+        accessor.setDestination(BroadcastService.ANNOUNCEMENT_DESTINATION);
+        accessor.setUser(user);
+        accessor.setSessionAttributes(new HashMap<>());
+        node.onSubscribe(new SessionSubscribeEvent(node,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), user));
+    }
+}
@@ -0,0 +1,86 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.dtos.SearchPage;
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.entity.ConversationSummary;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageSearchServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private MessageSearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new MessageSearchService(mongoTemplate, mock(MessageArchive.class));
+        ReflectionTestUtils.setField(searchService, "defaultPageSize", 20);
+        ReflectionTestUtils.setField(searchService, "maxPageSize", 50);
+        ReflectionTestUtils.setField(searchService, "maxResults", 500);
+        ReflectionTestUtils.setField(searchService, "maxQueryLength", 200);
+        ReflectionTestUtils.setField(searchService, "timeout", Duration.ofSeconds(2));
+
+        // Two conversations with a summary, one from before summaries existed
+        when(mongoTemplate.find(any(Query.class), eq(ConversationSummary.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            return query.getQueryObject().containsKey("participants")
+                    ? List.of(summary("u_b"), summary("u_c"))
+                    : List.of(summary("u_b"));
+        });
+        when(mongoTemplate.count(any(Query.class), eq(ConversationSummary.class))).thenReturn(2L);
+        when(mongoTemplate.findDistinct(any(Query.class), eq("conversationId"), eq(ChatMessage.class), eq(String.class)))
+                .thenReturn(List.of("u_b", "u_legacy"));
+        when(mongoTemplate.getCollectionName(ChatMessage.class)).thenReturn("chat_messages");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), anyString())).thenReturn(List.of());
+    }
+
+    @Test
+    void conversationsWithoutSummaryAreSearched() {
+        ReflectionTestUtils.setField(searchService, "maxConversations", 5);
+
+        SearchPage page = searchService.search("u", "hello", null, SearchPage.Order.RELEVANCE, 0, null).join();
+
+        assertThat(page.getConversationsSearched()).isEqualTo(3);
+        assertThat(page.isTruncated()).isFalse();
+        assertThat(searchedConversations()).containsExactly("u_b", "u_c", "u_legacy");
+    }
+
+    @Test
+    void pageSaysWhenConversationsWereLeftOut() {
+        ReflectionTestUtils.setField(searchService, "maxConversations", 2);
+
+        SearchPage page = searchService.search("u", "hello", null, SearchPage.Order.RELEVANCE, 0, null).join();
+
+        assertThat(page.getConversationsSearched()).isEqualTo(2);
+        assertThat(page.isTruncated()).isTrue();
+    }
+
+    private List<Object> searchedConversations() {
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, atLeastOnce()).find(queries.capture(), eq(Document.class), anyString());
+        return queries.getAllValues().stream().map(query -> query.getQueryObject().get("conversationId")).toList();
+    }
+
+    private static ConversationSummary summary(String id) {
+        ConversationSummary summary = new ConversationSummary();
+        summary.setId(id);
+        return summary;
+    }
+}
@@ -0,0 +1,78 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.ArchivedMessageBucket;
+import com.realtime.myfriend.entity.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageTieringJobTest {
+
+    private static final LocalDateTime OLD = LocalDateTime.now().minusDays(200);
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MessageArchive messageArchive = mock(MessageArchive.class);
+    private MessageTieringJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new MessageTieringJob(mongoTemplate, messageArchive, mock(ConversationTailCache.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(job, "batchSize", 100);
+        ReflectionTestUtils.setField(job, "messagesPerBucket", 100);
+        ReflectionTestUtils.setField(job, "maxMessagesPerSecond", 1_000_000);
+        ReflectionTestUtils.setField(job, "maxRunTime", Duration.ofSeconds(10));
+        when(messageArchive.maxHotAge()).thenReturn(Duration.ofDays(90));
+        when(messageArchive.write(any(), anyList())).thenReturn(ArchivedMessageBucket.builder().payload(new byte[0]).build());
+    }
+
+    @Test
+    void conversationStopsAtItsOldestUnreadMessage() throws InterruptedException {
+        when(mongoTemplate.find(any(Query.class), eq(ChatMessage.class))).thenReturn(List.of(
+                direct("m1", "a_b", 1, true),
+                direct("m2", "a_b", 2, false),
+                direct("m3", "a_b", 3, true),
+                direct("m4", "a_c", 4, true),
+                group("m5", "group:g", 5)
+        ), List.of());
+
+        job.runOnce();
+
+        ArgumentCaptor<List<ChatMessage>> archived = listCaptor();
+        verify(messageArchive).write(eq("a_b"), archived.capture());
+        assertThat(archived.getValue()).extracting(ChatMessage::getId).containsExactly("m1");
+        verify(messageArchive).write(eq("a_c"), anyList());
+        verify(messageArchive).write(eq("group:g"), anyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<ChatMessage>> listCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private static ChatMessage direct(String id, String conversationId, int minute, boolean read) {
+        return ChatMessage.builder().id(id).conversationId(conversationId).senderId("a").receiverId("b")
+                .timestamp(OLD.plusMinutes(minute)).read(read).build();
+    }
+
+    private static ChatMessage group(String id, String conversationId, int minute) {
+        return ChatMessage.builder().id(id).conversationId(conversationId).senderId("a")
+                .timestamp(OLD.plusMinutes(minute)).read(false).build();
+    }
+}
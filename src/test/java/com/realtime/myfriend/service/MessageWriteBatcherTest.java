@@ -0,0 +1,123 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.entity.ChatMessage;
+import com.realtime.myfriend.exception.PartialWriteException;
+import com.realtime.myfriend.repository.MessageStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageWriteBatcherTest {
+
+    private final MessageStore messageStore = mock(MessageStore.class);
+    private final ConversationSummaryService summaryService = mock(ConversationSummaryService.class);
+    private final ConversationTailCache tailCache = mock(ConversationTailCache.class);
+    private MessageWriteBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        batcher = new MessageWriteBatcher(messageStore, new SimpleMeterRegistry(), summaryService, tailCache);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "batchSize", 3);
+        // Long enough that the three submits below land in one flush
+        ReflectionTestUtils.setField(batcher, "lingerMs", 500L);
+        ReflectionTestUtils.setField(batcher, "queueCapacity", 16);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        batcher.stop();
+    }
+
+    @Test
+    void partialWriteCompletesTheStoredPrefix() throws Exception {
+        when(messageStore.appendAll(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            throw new PartialWriteException("duplicate", messages.subList(0, 2), new RuntimeException());
+        });
+        batcher.start();
+
+        CompletableFuture<ChatMessage> first = batcher.submit(message("one"));
+        CompletableFuture<ChatMessage> second = batcher.submit(message("two"));
+        CompletableFuture<ChatMessage> third = batcher.submit(message("three"));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getContent()).isEqualTo("one");
+        assertThat(second.get(5, TimeUnit.SECONDS).getContent()).isEqualTo("two");
+        assertThatThrownBy(() -> third.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(PartialWriteException.class);
+        verify(summaryService).recordMessages(List.of(first.get(), second.get()));
+        verify(tailCache).append(List.of(first.get(), second.get()));
+    }
+
+    @Test
+    void storedMessagesCompleteWhenTheSummaryUpdateFails() throws Exception {
+        when(messageStore.appendAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new IllegalStateException("summary down")).when(summaryService).recordMessages(anyList());
+        ReflectionTestUtils.setField(batcher, "lingerMs", 1L);
+        batcher.start();
+
+        assertThat(batcher.submit(message("one")).get(5, TimeUnit.SECONDS).getContent()).isEqualTo("one");
+        verify(tailCache).append(anyList());
+    }
+
+    @Test
+    void submitAfterStopFailsInsteadOfHanging() throws Exception {
+        batcher.start();
+        batcher.stop();
+
+        assertThatThrownBy(() -> batcher.submit(message("late")).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void stopFailsWritesTheFlusherNeverReached() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageStore.appendAll(any())).thenAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return invocation.getArgument(0);
+        });
+        ReflectionTestUtils.setField(batcher, "batchSize", 1);
+        batcher.start();
+
+        CompletableFuture<ChatMessage> inFlight = batcher.submit(message("one"));
+        flushing.await(5, TimeUnit.SECONDS);
+        CompletableFuture<ChatMessage> queued = batcher.submit(message("two"));
+        // Released while stop() waits on the flusher, which then settles the queued write too
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            release.countDown();
+        });
+        batcher.stop();
+
+        assertThat(inFlight.get(5, TimeUnit.SECONDS).getContent()).isEqualTo("one");
+        assertThat(queued).isDone();
+    }
+
+    private static ChatMessage message(String content) {
+        return ChatMessage.builder().conversationId("a:b").senderId("a").receiverId("b").content(content).build();
+    }
+}
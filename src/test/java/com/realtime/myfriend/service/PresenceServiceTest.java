@@ -0,0 +1,98 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.helper.WebSocketSessionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PresenceServiceTest {
+
+    // One bus shared by both nodes stands in for the relay delivering every event everywhere
+    @SuppressWarnings("unchecked")
+    private final ClusterEventBus bus = new ClusterEventBus(mock(SimpMessagingTemplate.class),
+            mock(ObjectProvider.class), "simple");
+
+    private final PresenceWriteBuffer writesA = mock(PresenceWriteBuffer.class);
+    private final PresenceWriteBuffer writesB = mock(PresenceWriteBuffer.class);
+    private final PresenceSubscriptionRegistry watchersB = mock(PresenceSubscriptionRegistry.class);
+    private final WebSocketSessionRegistry sessions = mock(WebSocketSessionRegistry.class);
+    private PresenceService nodeA;
+    private PresenceService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = node(writesA, mock(PresenceSubscriptionRegistry.class));
+        nodeB = node(writesB, watchersB);
+    }
+
+    @Test
+    void sessionOnAnotherNodeCountsAsOnline() {
+        nodeA.userConnected("u1", "a-1");
+
+        assertThat(nodeB.isUserOnline("u1")).isTrue();
+        verify(watchersB).publish("u1", true);
+        // Written once, by the node the session is on
+        verify(writesA).record("u1", true);
+        verify(writesB, never()).record(anyString(), anyBoolean());
+    }
+
+    @Test
+    void userStaysOnlineWhileAnyNodeHoldsASession() {
+        nodeA.userConnected("u1", "a-1");
+        nodeB.userConnected("u1", "b-1");
+
+        nodeA.sessionClosed("a-1");
+        nodeA.expireIdleSessions();
+        assertThat(nodeB.isUserOnline("u1")).isTrue();
+        verify(watchersB, never()).publish("u1", false);
+
+        nodeB.sessionClosed("b-1");
+        nodeB.expireIdleSessions();
+        assertThat(nodeA.isUserOnline("u1")).isFalse();
+        verify(watchersB, times(1)).publish("u1", false);
+        verify(writesB).record("u1", false);
+    }
+
+    @Test
+    void idleSessionIsClosedNotJustForgotten() {
+        nodeA.userConnected("u1", "a-1");
+        nodeA.expireIdleSessions();
+        nodeA.expireIdleSessions();
+
+        verify(sessions).close("a-1", CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void activeSessionIsKept() {
+        nodeA.userConnected("u1", "a-1");
+        for (int i = 0; i < 5; i++) {
+            nodeA.sessionActive("a-1");
+            nodeA.expireIdleSessions();
+        }
+
+        verify(sessions, never()).close(anyString(), any());
+        assertThat(nodeA.isUserOnline("u1")).isTrue();
+    }
+
+    private PresenceService node(PresenceWriteBuffer writes, PresenceSubscriptionRegistry watchers) {
+        PresenceService node = new PresenceService(writes, watchers, bus, sessions);
+        ReflectionTestUtils.setField(node, "livenessTickMs", 100L);
+        // Two liveness ticks
+        ReflectionTestUtils.setField(node, "idleTimeoutMs", 200L);
+        ReflectionTestUtils.setField(node, "reconnectGraceMs", 0L);
+        node.initLiveness();
+        return node;
+    }
+}
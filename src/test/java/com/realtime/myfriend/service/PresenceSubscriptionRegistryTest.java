@@ -0,0 +1,78 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.dtos.PresenceDiff;
+import com.realtime.myfriend.helper.PayloadCodecNegotiator;
+import com.realtime.myfriend.service.PresenceService.PresenceNotification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PresenceSubscriptionRegistryTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private PresenceSubscriptionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        PayloadCodecNegotiator codecNegotiator = mock(PayloadCodecNegotiator.class);
+        when(codecNegotiator.headersForSession(anyString())).thenReturn(new MessageHeaders(Map.of()));
+        registry = new PresenceSubscriptionRegistry(messagingTemplate, codecNegotiator, mock(SlowConsumerTracker.class));
+        ReflectionTestUtils.setField(registry, "maxInterestsPerSession", 2);
+    }
+
+    @Test
+    void defaultsDoNotReplaceAnExplicitSubscription() {
+        registry.open("s1", "alice");
+        registry.subscribe("s1", "alice", List.of("bob"));
+
+        assertThat(registry.subscribeDefaults("s1", List.of("carol"))).isTrue();
+        registry.publish("bob", true);
+        registry.publish("carol", true);
+        registry.flush();
+
+        assertThat(sentChanges()).containsExactly(new PresenceNotification("bob", true));
+    }
+
+    @Test
+    void defaultsAreSkippedOnceTheSessionDisconnected() {
+        registry.open("s1", "alice");
+        registry.unsubscribe("s1");
+
+        assertThat(registry.subscribeDefaults("s1", List.of("bob"))).isFalse();
+        assertThat(registry.isOpen("s1")).isFalse();
+        registry.publish("bob", true);
+        registry.flush();
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(), anyMap());
+    }
+
+    @Test
+    void explicitSubscriptionIsCapped() {
+        Set<String> kept = registry.subscribe("s1", "alice", List.of("bob", "carol", "dave"));
+
+        assertThat(kept).hasSize(2);
+        assertThat(List.of("bob", "carol", "dave")).containsAll(kept);
+    }
+
+    private List<PresenceNotification> sentChanges() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSendToUser(anyString(), anyString(), payload.capture(), anyMap());
+        return ((PresenceDiff) payload.getValue()).getChanges();
+    }
+}
@@ -0,0 +1,116 @@
+package com.realtime.myfriend.service;
+
+import com.realtime.myfriend.helper.PayloadCodecNegotiator;
+import com.realtime.myfriend.repository.MessageStore;
+import com.realtime.myfriend.util.ConversationIds;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.anyCollection;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReadReceiptCoalescerTest {
+
+    private static final String CONVERSATION = ConversationIds.of("sender", "reader");
+
+    private final MessageStore messageStore = mock(MessageStore.class);
+    private final ConversationSummaryService summaryService = mock(ConversationSummaryService.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final UserService userService = mock(UserService.class);
+    private ReadReceiptCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new ReadReceiptCoalescer(messageStore, summaryService, mock(ConversationTailCache.class),
+                messagingTemplate, userService, mock(PayloadCodecNegotiator.class), new SimpleMeterRegistry());
+        when(messageStore.lastStoredSequence(CONVERSATION)).thenReturn(100L);
+        when(userService.findUsernameById("sender")).thenReturn("sender-name");
+    }
+
+    @Test
+    void failedWatermarkIsRetriedAtTheHighestSequence() {
+        when(messageStore.markReadUpTo(CONVERSATION, "reader", 10L))
+                .thenThrow(new IllegalStateException("down"))
+                .thenReturn(3L);
+        coalescer.record("sender", "reader", 10L, null);
+        coalescer.flush();
+
+        // A lower receipt arriving meanwhile does not take the retried watermark back
+        coalescer.record("sender", "reader", 5L, null);
+        coalescer.flush();
+
+        verify(messageStore, times(2)).markReadUpTo(CONVERSATION, "reader", 10L);
+        verify(messageStore, never()).markReadUpTo(CONVERSATION, "reader", 5L);
+        verify(summaryService).recordWatermark(CONVERSATION, "reader", 10L, 3L);
+    }
+
+    @Test
+    void watermarkIsCappedAtTheNewestStoredMessage() {
+        coalescer.record("sender", "reader", null, null);
+        coalescer.flush();
+
+        verify(messageStore).markReadUpTo(CONVERSATION, "reader", 100L);
+        verify(messageStore, never()).currentSequence(anyString());
+    }
+
+    @Test
+    void failedAnnouncementIsNotRetried() {
+        when(messageStore.markReadUpTo(eq(CONVERSATION), eq("reader"), anyLong())).thenReturn(1L);
+        doThrow(new IllegalStateException("broker down")).when(messagingTemplate)
+                .convertAndSendToUser(anyString(), anyString(), any(), anyMap());
+        coalescer.record("sender", "reader", 10L, null);
+        coalescer.flush();
+        coalescer.flush();
+
+        verify(messageStore, times(1)).markReadUpTo(CONVERSATION, "reader", 10L);
+    }
+
+    @Test
+    void messageIdsAreResolvedAtFlushTime() {
+        when(messageStore.highestSequence(CONVERSATION, Set.of("m1", "m2", "m3"))).thenReturn(7L);
+        coalescer.record("sender", "reader", null, List.of("m1", "m2"));
+        coalescer.record("sender", "reader", null, List.of("m3"));
+        verify(messageStore, never()).highestSequence(anyString(), anyCollection());
+
+        coalescer.flush();
+
+        verify(messageStore).markReadUpTo(CONVERSATION, "reader", 7L);
+    }
+
+    @Test
+    void messagesWithoutSequenceAreMarkedReadById() {
+        when(messageStore.highestSequence(eq(CONVERSATION), anyCollection())).thenReturn(0L);
+        when(messageStore.markRead(CONVERSATION, "reader", Set.of("legacy"))).thenReturn(1L);
+        coalescer.record("sender", "reader", null, List.of("legacy"));
+        coalescer.flush();
+
+        verify(messageStore).markRead(CONVERSATION, "reader", Set.of("legacy"));
+        verify(summaryService).recordRead(CONVERSATION, "reader", 1L, false);
+        verify(messageStore, never()).markReadUpTo(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void readAllCoversMessagesWithoutSequence() {
+        when(messageStore.lastStoredSequence(CONVERSATION)).thenReturn(0L);
+        when(messageStore.markReadUpTo(CONVERSATION, "reader", 0L)).thenReturn(4L);
+        coalescer.record("sender", "reader", null, null);
+        coalescer.flush();
+
+        verify(summaryService).recordRead(CONVERSATION, "reader", 4L, false);
+    }
+}